@@ -22,8 +22,10 @@ public class Factory {
         var rect = RectI.at(-4, 0, 8, 20);
         var hitbox = entity.add(Collider.makeRect(rect), Collider.class);
 
+        // note - Player integrates its own gravity, in fixed point
         var mover = entity.add(new Mover(), Mover.class);
         mover.collider = hitbox;
+        mover.fixedPoint = true;
 
         return entity;
     }
@@ -86,9 +88,9 @@ public class Factory {
 
             @Override
             public void hurt(Hurtable self) {
-                var player = self.world().first(Player.class);
-                if (player != null) {
-                    var sign = Calc.sign(self.entity().position.x - player.entity().position.x);
+                // get knocked back away from whatever hit us
+                if (self.attacker != null) {
+                    var sign = Calc.sign(self.entity().position.x - self.attacker.entity().position.x);
                     mover.speed.x = sign * 120;
                 }
 
@@ -110,8 +112,9 @@ public class Factory {
                 anim.play("jump");
                 mover.speed.y = 110;
 
+                // only jump towards the player if we can actually see them
                 var player = self.world().first(Player.class);
-                if (player != null) {
+                if (player != null && canSee(self.entity(), player.entity())) {
                     var dir = Calc.sign(player.entity().position.x - self.entity().position.x);
                     if (dir == 0) {
                         dir = 1;
@@ -138,4 +141,28 @@ public class Factory {
         return en;
     }
 
+    private static boolean canSee(Entity viewer, Entity target) {
+        // entity positions are at their feet, so look from roughly eye height
+        var eye_height = 8;
+        var x0 = viewer.position.x;
+        var y0 = viewer.position.y + eye_height;
+        var x1 = target.position.x;
+        var y1 = target.position.y + eye_height;
+
+        var collisions = viewer.world.system(Collisions.class);
+        if (collisions != null) {
+            return collisions.lineOfSight(x0, y0, x1, y1, Mask.solid);
+        }
+
+        // no collision system to ask, so test each solid directly, like Collider.check() does
+        var collider = viewer.world.first(Collider.class);
+        while (collider != null) {
+            if ((collider.mask & Mask.solid) == Mask.solid && collider.raycast(x0, y0, x1, y1, null)) {
+                return false;
+            }
+            collider = (Collider) collider.next();
+        }
+        return true;
+    }
+
 }
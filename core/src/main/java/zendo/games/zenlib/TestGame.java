@@ -7,17 +7,24 @@ import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.graphics.glutils.FrameBuffer;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
-import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
-import com.badlogic.gdx.maps.tiled.objects.TiledMapTileMapObject;
 import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
 import lombok.var;
+import zendo.games.zenlib.assets.AssetLoader;
 import zendo.games.zenlib.assets.Content;
+import zendo.games.zenlib.assets.Room;
+import zendo.games.zenlib.assets.RoomStreamer;
 import zendo.games.zenlib.components.Collider;
+import zendo.games.zenlib.components.Collisions;
 import zendo.games.zenlib.components.Mover;
+import zendo.games.zenlib.components.Movers;
 import zendo.games.zenlib.components.Player;
 import zendo.games.zenlib.components.Tilemap;
 import zendo.games.zenlib.config.Config;
 import zendo.games.zenlib.config.Debug;
+import zendo.games.zenlib.ecs.Entity;
 import zendo.games.zenlib.ecs.Mask;
 import zendo.games.zenlib.ecs.World;
 import zendo.games.zenlib.utils.Calc;
@@ -38,6 +45,11 @@ public class TestGame implements Game {
     OrthographicCamera worldCamera;
     World world;
 
+    RoomStreamer<RoomContents> rooms;
+    RectI roomBounds = new RectI();
+    int roomWidth;
+    int roomHeight;
+
     @Override
     public void init() {
         Content.load();
@@ -58,85 +70,186 @@ public class TestGame implements Game {
         worldCamera.update();
 
         world = new World();
+        world.addSystem(new Collisions(world));
+        // note - the player's mover is fixed point, so it updates itself, every other mover is batched
+        world.addSystem(new Movers(world)).enabled = true;
+
+        // the world starts once the startup content is ready, until then a loading bar is shown
+        Content.loader.onComplete = () -> {
+            if (rooms == null) {
+                start();
+            }
+        };
+    }
 
-        loadMap();
+    private void start() {
+        // load the first room up front, neighboring rooms are streamed in as the player moves
+        // note - the player is only ever spawned by the first room, so it has to have a player spawner
+        rooms = new RoomStreamer<>(roomListener);
+        var firstRoom = rooms.load(0, 0);
+        if (firstRoom == null) {
+            throw new GdxRuntimeException("Missing start room " + Room.filename(0, 0));
+        }
+        roomWidth = firstRoom.width();
+        roomHeight = firstRoom.height();
 
         var player = world.first(Player.class);
+        if (player == null) {
+            throw new GdxRuntimeException("Start room " + Room.filename(0, 0) + " has no player spawner");
+        }
         worldCamera.position.set(player.entity().position.x, player.entity().position.y, 0);
         worldCamera.update();
     }
 
-    private void loadMap() {
-        // get tiled map parameters
-        var collisionLayer = (TiledMapTileLayer) Content.tiledMap.getLayers().get("collision");
-        var tileSize = collisionLayer.getTileWidth();
-        var columns = collisionLayer.getWidth();
-        var rows = collisionLayer.getHeight();
+    /**
+     * Room contents that are built on a room streaming thread, then added to the world once the room is committed
+     */
+    static class RoomContents {
+        Tilemap tilemap;
+        Collider solids;
+        Entity entity;
+
+        // sprite groups used by the room's spawners, packed on the streaming thread and uploaded when the room is committed
+        final Array<String> spriteGroups = new Array<>();
+        final Array<AssetLoader.Job> spriteJobs = new Array<>();
+
+        // objects spawned by the room, with their generation at spawn time since destroyed entities are reused
+        final Array<Entity> spawned = new Array<>();
+        final IntArray spawnedGenerations = new IntArray();
+
+        void spawned(Entity entity) {
+            spawned.add(entity);
+            spawnedGenerations.add(entity.generation);
+        }
+    }
 
-        // create a map entity
-        var map = world.addEntity();
+    private final RoomStreamer.Listener<RoomContents> roomListener = new RoomStreamer.Listener<RoomContents>() {
+        @Override
+        public RoomContents prepare(Room room) {
+            var tileSize = room.tileWidth;
+            var columns = room.columns;
+            var rows = room.rows;
 
-        // add a tilemap component for textures
-        var tilemap = map.add(new Tilemap(), Tilemap.class);
-        tilemap.init(tileSize, columns, rows);
+            var contents = new RoomContents();
 
-        // add a collider component
-        var solids = map.add(Collider.makeGrid(tileSize, columns, rows), Collider.class);
-        solids.mask = Mask.solid;
+            // create a tilemap component for textures
+            // note - tile ids are the room's gids, they're resolved to texture regions when the room is committed
+            contents.tilemap = new Tilemap(tileSize, columns, rows);
 
-        // parse the tiled map layers
-        for (var layer : Content.tiledMap.getLayers()) {
-            // parse tile layers
-            if (layer instanceof TiledMapTileLayer) {
-                var tileLayer = (TiledMapTileLayer) layer;
+            // create a collider component
+            contents.solids = Collider.makeGrid(tileSize, columns, rows);
+            contents.solids.mask = Mask.solid;
+
+            // only the collision layer is used to populate the collider grid
+            for (int x = 0; x < columns; x++) {
+                for (int y = 0; y < rows; y++) {
+                    if (room.solid(x, y)) {
+                        contents.solids.setCell(x, y, true);
+                    }
+                }
+            }
+
+            // both collision and background layers are used to set tile textures
+            for (var layer : room.layers) {
+                if (!"collision".equals(layer.name) && !"background".equals(layer.name)) continue;
 
                 for (int x = 0; x < columns; x++) {
                     for (int y = 0; y < rows; y++) {
                         // skip empty cells
-                        var cell = tileLayer.getCell(x, y);
-                        if (cell == null) continue;
-
-                        // determine what type of layer this is
-                        var isCollision = "collision".equals(layer.getName());
-                        var isBackground = "background".equals(layer.getName());
-
-                        // only collision layer tiles are used to populate the collider grid
-                        if (isCollision) {
-                            solids.setCell(x, y, true);
-                        }
-
-                        // both collision and background layers are used to set tile textures
-                        if (isCollision || isBackground) {
-                            tilemap.setCell(x, y, cell.getTile().getTextureRegion());
-                        }
+                        var gid = room.gid(layer, x, y);
+                        if (gid == 0) continue;
+
+                        contents.tilemap.setTile(x, y, gid);
                     }
                 }
             }
-            // parse objects layer
-            else if ("objects".equals(layer.getName())) {
-                var objects = layer.getObjects().getByType(TiledMapTileMapObject.class);
-                for (var object : objects) {
-                    // parse position property from object
-                    // scale to specified tileSize in case it's different than the tiled map tile size
-                    // this way the scale of the map onscreen can be changed by adjusting the tileSize parameter
-                    var position = Point.at(
-                            (int) (object.getX() / collisionLayer.getTileWidth())   * tileSize,
-                            (int) (object.getY() / collisionLayer.getTileHeight())  * tileSize);
-
-                    // parse the object type
-                    var type = (String) object.getProperties().get("type");
-                    if ("spawner".equals(type)) {
-                        // figure out what to spawn and do so
-                        var target = (String) object.getProperties().get("target");
-                        switch (target) {
-                            case "player": Factory.player(world, position); break;
-                            case "blob":   Factory.blob(world, position);   break;
-                        }
-                    }
+
+            // decode the tilesets, and decode and pack the sprites this room's spawners need, while we're off the render thread
+            Content.roomTiles.prepare(room);
+            for (var spawner : room.spawners) {
+                var group = spawner.target;
+                if (group == null || !Content.sprites.hasGroup(group) || contents.spriteGroups.contains(group, false)) continue;
+
+                var job = Content.sprites.preloadJob(group, null);
+                job.load();
+                contents.spriteGroups.add(group);
+                contents.spriteJobs.add(job);
+            }
+
+            return contents;
+        }
+
+        @Override
+        public void loaded(Room room, RoomContents contents) {
+            var tileSize = room.tileWidth;
+
+            // resolve tile ids to textures now that we're on the render thread
+            // note - the room holds a reference to its tilesets until it's unloaded,
+            //        they were decoded in prepare() so this only uploads them
+            Content.roomTiles.acquire(room);
+            var tilemap = contents.tilemap;
+            tilemap.forEachTile(0, 0, room.columns, room.rows, (x, y, id) -> {
+                if (tilemap.getRegion(id) == null) {
+                    tilemap.setTile(id, Content.roomTiles.region(room, id));
+                }
+            });
+
+            // create a map entity for the room
+            var map = world.addEntity(Point.at(room.originX(), room.originY()));
+            map.add(contents.tilemap, Tilemap.class);
+            map.add(contents.solids, Collider.class);
+            contents.entity = map;
+
+            // create the atlases for the sprites the room's objects use before spawning them
+            // note - this is a page or two per group, the room's spawners need all of them this tick
+            for (var job : contents.spriteJobs) {
+                while (!job.upload());
+            }
+            contents.spriteJobs.clear();
+
+            // spawn the room's objects
+            for (var spawner : room.spawners) {
+                // scale to specified tileSize in case it's different than the tiled map tile size
+                // this way the scale of the map onscreen can be changed by adjusting the tileSize parameter
+                var position = Point.at(
+                        room.originX() + (spawner.x / room.tileWidth)  * tileSize,
+                        room.originY() + (spawner.y / room.tileHeight) * tileSize);
+
+                // figure out what to spawn and do so
+                // note - there's only one player, spawned by the start room, which is loaded first
+                if (spawner.target == null) continue;
+                switch (spawner.target) {
+                    case "player": if (world.first(Player.class) == null) Factory.player(world, position); break;
+                    case "blob":   contents.spawned(Factory.blob(world, position)); break;
                 }
             }
         }
-    }
+
+        @Override
+        public void discarded(Room room, RoomContents contents) {
+            // the room is never shown, so let go of its packed sprites without uploading them
+            for (var job : contents.spriteJobs) {
+                job.cancel();
+            }
+            contents.spriteJobs.clear();
+        }
+
+        @Override
+        public void unloaded(Room room, RoomContents contents) {
+            // remove whatever is left of the objects this room spawned, wherever they've wandered off to
+            for (int i = 0; i < contents.spawned.size; i++) {
+                var entity = contents.spawned.get(i);
+                if (entity.world == world && entity.generation == contents.spawnedGenerations.get(i)) {
+                    entity.destroy();
+                }
+            }
+            contents.spawned.clear();
+            contents.spawnedGenerations.clear();
+
+            contents.entity.destroy();
+            Content.roomTiles.release(room);
+        }
+    };
 
     @Override
     public void update(float dt) {
@@ -144,6 +257,10 @@ public class TestGame implements Game {
             Gdx.app.exit();
         }
 
+        // upload whatever content has finished loading, and wait for the startup content
+        Content.update();
+        if (rooms == null) return;
+
         // debug input handling
         {
             if (Gdx.input.isKeyJustPressed(Input.Keys.F1)) {
@@ -167,19 +284,24 @@ public class TestGame implements Game {
             }
         }
 
+        // commit streamed rooms at the tick boundary, before anything in the world updates
+        var player = world.first(Player.class);
+        rooms.update(
+                Math.floorDiv(player.entity().position.x, roomWidth),
+                Math.floorDiv(player.entity().position.y, roomHeight));
+
         world.update(dt);
 
-        // keep player in bounds
-        var solids = world.first(Tilemap.class).entity().get(Collider.class).getGrid();
-        var bounds = RectI.at(0, 0, solids.columns * solids.tileSize, solids.rows * solids.tileSize);
+        // keep player in the bounds of the loaded rooms
+        var bounds = rooms.bounds(roomBounds);
 
-        var player = world.first(Player.class);
         player.entity().position.x = Calc.clampInt(player.entity().position.x, bounds.x, bounds.x + bounds.w);
         player.entity().position.y = Calc.clampInt(player.entity().position.y, bounds.y, bounds.y + bounds.h);
 
         // find camera targets to follow player
         // NOTE: this is a little silly because depending which way the player is moving ceiling/floor tracks quickly while the other doesn't
-        var targetX = (player.get(Mover.class).speed.x > 0)
+        var mover = player.get(Mover.class);
+        var targetX = (mover.speedX() > 0)
                 ? Calc.ceiling(Calc.approach(worldCamera.position.x, player.entity().position.x, 400 * dt))
                 : Calc.floor  (Calc.approach(worldCamera.position.x, player.entity().position.x, 400 * dt));
         var targetY = Calc.ceiling(Calc.approach(worldCamera.position.y, player.entity().position.y, 100 * dt));
@@ -196,6 +318,10 @@ public class TestGame implements Game {
 
     @Override
     public void render() {
+        if (rooms == null) {
+            renderLoadingIntoWindow();
+            return;
+        }
         renderWorldIntoFramebuffer();
         renderFramebufferIntoWindow();
     }
@@ -205,6 +331,9 @@ public class TestGame implements Game {
         frameBufferTexture.dispose();
         frameBuffer.dispose();
         batch.dispose();
+        if (rooms != null) {
+            rooms.dispose();
+        }
         Content.unload();
     }
 
@@ -283,4 +412,25 @@ public class TestGame implements Game {
         batch.end();
     }
 
+    private void renderLoadingIntoWindow() {
+        Gdx.gl.glClearColor(0.1f, 0.1f, 0.1f, 1f);
+        Gdx.gl.glClear(GL30.GL_COLOR_BUFFER_BIT);
+
+        var barWidth = Config.window_width / 2f;
+        var barHeight = 20f;
+        var barX = (Config.window_width - barWidth) / 2f;
+        var barY = (Config.window_height - barHeight) / 2f;
+
+        batch.setProjectionMatrix(screenProjection);
+        batch.begin();
+        {
+            batch.setColor(Color.DARK_GRAY);
+            batch.draw(Content.pixel, barX, barY, barWidth, barHeight);
+            batch.setColor(Color.SKY);
+            batch.draw(Content.pixel, barX, barY, barWidth * Content.progress(), barHeight);
+            batch.setColor(Color.WHITE);
+        }
+        batch.end();
+    }
+
 }
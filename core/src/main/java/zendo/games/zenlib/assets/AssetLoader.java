@@ -0,0 +1,178 @@
+package zendo.games.zenlib.assets;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.badlogic.gdx.utils.async.AsyncResult;
+import lombok.var;
+
+/**
+ * Loads assets in two stages: file io and decoding run on worker threads,
+ * then GL resources are created on the render thread from {@link #update()},
+ * a few upload steps per frame within {@link #uploadBudgetMillis}, so loading can happen behind
+ * a loading screen or mid-game without a hitch.
+ *
+ * Jobs are uploaded in the order they were submitted. A job with a lot to upload splits it into steps,
+ * like one texture per step, so a single job can be spread over several frames.
+ */
+public class AssetLoader implements Disposable {
+
+    private static final String tag = AssetLoader.class.getSimpleName();
+
+    public interface Job {
+        /**
+         * Called on a worker thread, do file io and decoding here, must not touch GL
+         */
+        void load();
+
+        /**
+         * Called on the render thread after load() finishes, create textures here, one step per call
+         *
+         * @return true once everything is uploaded, otherwise it's called again for the next step,
+         *         in a later frame if this frame's budget has run out
+         */
+        boolean upload();
+
+        /**
+         * Called on the render thread after load() finishes, instead of uploading, when the result isn't needed,
+         * release whatever load() and any upload steps created
+         */
+        default void cancel() {}
+    }
+
+    public interface Uploader {
+        boolean upload(Job job);
+    }
+
+    public interface OnProgress {
+        void progress(float percent);
+    }
+
+    public interface OnComplete {
+        void complete();
+    }
+
+    // stop uploading for this frame once this much time has been spent, at least one upload step always runs
+    public float uploadBudgetMillis = 4f;
+
+    // runs each job's upload step, replace it to run the worker stages headless without a GL context
+    public Uploader uploader = Job::upload;
+
+    // called from update() whenever a job finishes uploading
+    public OnProgress onProgress;
+
+    // called from update() once every submitted job has been uploaded
+    public OnComplete onComplete;
+
+    private final AsyncExecutor executor;
+    private final Array<AsyncResult<Job>> pending = new Array<>();
+
+    private int submitted;
+    private int completed;
+
+    public AssetLoader() {
+        this(2);
+    }
+
+    public AssetLoader(int threads) {
+        this.executor = new AsyncExecutor(threads, "asset-loader");
+    }
+
+    /**
+     * Queue a job, its load stage starts right away on a worker thread
+     */
+    public void submit(Job job) {
+        submitted++;
+        pending.add(executor.submit(() -> {
+            job.load();
+            return job;
+        }));
+    }
+
+    /**
+     * Run upload steps for jobs whose load stage has finished, until the frame's upload budget runs out
+     * note - call this once per frame from the render thread
+     *
+     * @return true if every submitted job has been uploaded
+     */
+    public boolean update() {
+        if (pending.size == 0) {
+            return true;
+        }
+
+        var start = System.nanoTime();
+        var budgetNanos = (long) (uploadBudgetMillis * 1_000_000L);
+        var steps = 0;
+        while (pending.size > 0 && pending.first().isDone()) {
+            if (steps > 0 && System.nanoTime() - start >= budgetNanos) break;
+
+            var done = true;
+            try {
+                done = uploader.upload(pending.first().get());
+            } catch (GdxRuntimeException e) {
+                // a failed job still counts towards progress so loading can't get stuck on it
+                Gdx.app.error(tag, "Asset job failed", e);
+            }
+            steps++;
+            if (!done) continue;
+
+            pending.removeIndex(0);
+            completed++;
+
+            if (onProgress != null) {
+                onProgress.progress(progress());
+            }
+        }
+
+        if (pending.size == 0) {
+            // start counting progress from scratch for whatever is submitted next
+            submitted = 0;
+            completed = 0;
+            if (onComplete != null) {
+                onComplete.complete();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Block until every submitted job has loaded and uploaded, ignoring the upload budget
+     */
+    public void finish() {
+        var budget = uploadBudgetMillis;
+        uploadBudgetMillis = Float.MAX_VALUE;
+        while (!update()) {
+            Thread.yield();
+        }
+        uploadBudgetMillis = budget;
+    }
+
+    public boolean isDone() {
+        return pending.size == 0;
+    }
+
+    /**
+     * @return the fraction of submitted jobs that have been uploaded, in [0, 1]
+     */
+    public float progress() {
+        return (submitted == 0) ? 1f : (float) completed / submitted;
+    }
+
+    @Override
+    public void dispose() {
+        // note - disposing the executor waits for running loads, so every pending job can be cancelled
+        executor.dispose();
+        for (var result : pending) {
+            try {
+                result.get().cancel();
+            } catch (GdxRuntimeException e) {
+                Gdx.app.error(tag, "Asset job failed", e);
+            }
+        }
+        pending.clear();
+    }
+
+}
@@ -1,5 +1,6 @@
 package zendo.games.zenlib.assets;
 
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.PixmapIO;
@@ -7,31 +8,35 @@ import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.PixmapPacker;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas;
-import com.badlogic.gdx.maps.tiled.TiledMap;
-import com.badlogic.gdx.maps.tiled.TmxMapLoader;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
 import lombok.var;
+import zendo.games.zenlib.config.Config;
 import zendo.games.zenlib.config.Debug;
 import zendo.games.zenlib.utils.Aseprite;
 
 public class Content {
 
+    private static final String tag = Content.class.getSimpleName();
+
     public static BitmapFont font;
-    public static TiledMap tiledMap;
+    public static RoomTiles roomTiles;
     public static Texture pixel;
-    private static TextureAtlas atlas;
-
-    private static Array<Sprite> sprites;
+    public static SpriteRegistry sprites;
+    public static TextureBudget textureBudget;
+    public static AssetLoader loader;
 
     public static void load() {
         font = new BitmapFont();
-        tiledMap = new TmxMapLoader().load("maps/room_0x0.tmx");
         pixel = new Texture("pixel.png");
         pixel.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
 
-        sprites = new Array<>();
+        // sprite atlases and room tilesets share a texture budget,
+        // whichever textures nothing is using get evicted when it's exceeded
+        textureBudget = new TextureBudget(Config.texture_budget_bytes);
+        roomTiles = new RoomTiles(textureBudget);
 
-        // create a pixmap packer to generate a texture atlas from aseprite frames
+        // pixmap packer settings used to generate texture atlases from aseprite frames
         var pageWidth = 1024;
         var pageHeight = 1024;
         var pageFormat = Pixmap.Format.RGBA8888;
@@ -39,63 +44,189 @@ public class Content {
         var duplicateBorder = false;
         var stripWhitespaceX = false;
         var stripWhitespaceY = false;
-        var packStrategy = new PixmapPacker.GuillotineStrategy();
-        var packer = new PixmapPacker(
+        var filter = Texture.TextureFilter.Nearest;
+        var useMipMaps = false;
+        // note - frames are trimmed and deduplicated before they're packed, so the packer doesn't strip whitespace itself
+        SpriteRegistry.PackerFactory packers = () -> new PixmapPacker(
                 pageWidth, pageHeight, pageFormat, padding,
                 duplicateBorder, stripWhitespaceX, stripWhitespaceY,
-                packStrategy);
+                new PixmapPacker.SkylineStrategy());
+
+        // sprite manifest, sprites are only decoded and packed once something asks for them
+        sprites = new SpriteRegistry(packers, filter, textureBudget);
+        sprites.register("player", "sprites/player.ase");
+        sprites.register("blob",   "sprites/blob.ase");
+        sprites.register("pop",    "sprites/pop.ase");
+
+        // groups are preloaded or prefetched together, and share an atlas when preloaded,
+        // a room prefetches the group named by each spawner target when it's streamed in
+        sprites.group("startup", "player");
+        sprites.group("blob", "blob", "pop");
+
+        // use the baked startup sprites from a previous run if the sources and packer settings haven't changed
+        // note - anything that changes how the atlas is packed needs to be part of this string
+        var packSettings = pageWidth + "x" + pageHeight + ";" + pageFormat + ";" + padding
+                + ";" + duplicateBorder + ";" + stripWhitespaceX + ";" + stripWhitespaceY
+                + ";" + PixmapPacker.SkylineStrategy.class.getSimpleName() + ";" + filter + ";" + useMipMaps;
+        var startupPaths = new String[] {
+                  "sprites/player.ase"
+        };
+        var startup = new StartupSprites();
+        startup.cache = new SpriteCache(Gdx.files.local("cache/sprites"));
+        startup.settings = packSettings;
+        startup.paths = startupPaths;
+        startup.filter = filter;
+
+        // load the startup sprites in the background, the rest are loaded when they're first used
+        loader = new AssetLoader();
+        loader.submit(startup);
+    }
 
-        // load aseprite files and pack animation frame pixmaps
-        var playerSpriteInfo = Aseprite.loadAndPack(packer, "sprites/player.ase");
-        var blobSpriteInfo = Aseprite.loadAndPack(packer, "sprites/blob.ase");
-        var popSpriteInfo = Aseprite.loadAndPack(packer, "sprites/pop.ase");
+    /**
+     * Upload whatever has finished loading, within the loader's per frame budget
+     * note - call this once per frame from the render thread
+     *
+     * @return true once everything that's been submitted to the loader is ready
+     */
+    public static boolean update() {
+        return loader.update();
+    }
 
-        // create texture atlas from packer
-        var filter = Texture.TextureFilter.Nearest;
-        var useMipMaps = false;
-        atlas = packer.generateTextureAtlas(filter, filter, useMipMaps);
-
-        // cleanup packer
-        packer.dispose();
-
-        // create sprites (and dispose pixmaps in SpriteInfo.Aseprite)
-        var player = Aseprite.createSprite(playerSpriteInfo, atlas);
-        var blob = Aseprite.createSprite(blobSpriteInfo, atlas);
-        var pop = Aseprite.createSprite(popSpriteInfo, atlas);
-
-        // save the loaded sprites
-        sprites.addAll(
-                  player
-                , blob
-                , pop
-        );
-
-        // write out the aseprite texture atlas for debugging purposes if so desired
-        if (Debug.output_aseprite_atlas_as_png) {
-            var atlas_texture = atlas.getTextures().first();
-            var atlas_pixmap = atlas_texture.getTextureData().consumePixmap();
-            var file = new FileHandle("aseprite_atlas.png");
-            PixmapIO.writePNG(file, atlas_pixmap);
-            atlas_pixmap.dispose();
-        }
+    public static float progress() {
+        return loader.progress();
     }
 
     public static void unload() {
-        sprites.clear();
-
-        tiledMap.dispose();
-        atlas.dispose();
+        loader.dispose();
+        sprites.dispose();
+        Aseprite.releaseDecoders();
+        roomTiles.dispose();
         pixel.dispose();
         font.dispose();
     }
 
+    /**
+     * Find a sprite by name, loading it if this is the first time it's used
+     */
     public static Sprite findSprite(String name) {
-        for (var sprite : sprites) {
-            if (sprite.name.equals(name)) {
-                return sprite;
+        return sprites.get(name);
+    }
+
+    /**
+     * Startup sprites come from the sprite cache if it's up to date, otherwise they're decoded and packed, then cached.
+     * Either way the pages are decoded or packed on the loader thread and uploaded one page per step
+     */
+    private static class StartupSprites implements AssetLoader.Job {
+        SpriteCache cache;
+        String settings;
+        String[] paths;
+        Texture.TextureFilter filter;
+
+        String key;
+        TextureAtlas.TextureAtlasData cached;
+        Array<Pixmap> cachedPages;
+        int uploadedPages;
+        AssetLoader.Job rebuild;
+
+        @Override
+        public void load() {
+            key = Debug.use_sprite_cache ? SpriteCache.key(settings, paths) : null;
+            if (key != null && cache.has(key)) {
+                try {
+                    cached = cache.loadAtlasData(key);
+                    cachedPages = new Array<>();
+                    for (var page : cached.getPages()) {
+                        cachedPages.add(new Pixmap(page.textureFile));
+                    }
+                    return;
+                } catch (GdxRuntimeException e) {
+                    Gdx.app.error(tag, "Unable to load cached sprites, rebuilding them", e);
+                    disposeCachedPages();
+                }
+            }
+            rebuild();
+        }
+
+        @Override
+        public boolean upload() {
+            if (cached != null) {
+                try {
+                    if (uploadedPages < cachedPages.size) {
+                        var page = cached.getPages().get(uploadedPages);
+                        var pixmap = cachedPages.get(uploadedPages);
+                        page.texture = new Texture(pixmap, page.format, page.useMipMaps);
+                        pixmap.dispose();
+                        cachedPages.set(uploadedPages, null);
+                        uploadedPages++;
+                        return false;
+                    }
+
+                    // note - the atlas takes ownership of the page textures
+                    var atlas = new TextureAtlas(cached);
+                    try {
+                        sprites.add("startup", atlas, cache.loadSprites(key, atlas));
+                    } catch (GdxRuntimeException e) {
+                        atlas.dispose();
+                        throw e;
+                    }
+                    cached = null;
+                    return true;
+                } catch (GdxRuntimeException e) {
+                    // note - this falls back to decoding and packing on the render thread, but only behind the loading screen
+                    Gdx.app.error(tag, "Unable to load cached sprites, rebuilding them", e);
+                    disposeCachedPages();
+                    rebuild();
+                    return false;
+                }
+            }
+            return rebuild.upload();
+        }
+
+        @Override
+        public void cancel() {
+            disposeCachedPages();
+            if (rebuild != null) {
+                rebuild.cancel();
+                rebuild = null;
+            }
+        }
+
+        private void rebuild() {
+            rebuild = sprites.preloadJob("startup", (group, packer, startupSprites) -> {
+                // bake the packed pages and sprites for next time
+                if (key != null) {
+                    cache.save(key, packer, filter, startupSprites);
+                }
+
+                // write out the aseprite texture atlas for debugging purposes if so desired
+                if (Debug.output_aseprite_atlas_as_png) {
+                    var atlas_pixmap = packer.getPages().first().getPixmap();
+                    var file = new FileHandle("aseprite_atlas.png");
+                    PixmapIO.writePNG(file, atlas_pixmap);
+                }
+            });
+            rebuild.load();
+        }
+
+        private void disposeCachedPages() {
+            if (cached != null) {
+                for (var page : cached.getPages()) {
+                    if (page.texture != null) {
+                        page.texture.dispose();
+                        page.texture = null;
+                    }
+                }
+            }
+            if (cachedPages != null) {
+                for (var pixmap : cachedPages) {
+                    if (pixmap != null) {
+                        pixmap.dispose();
+                    }
+                }
             }
+            cached = null;
+            cachedPages = null;
         }
-        return null;
     }
 
 }
@@ -0,0 +1,118 @@
+package zendo.games.zenlib.assets;
+
+import com.badlogic.gdx.utils.Array;
+import lombok.var;
+
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Plain data for one room of the map, with no GL resources,
+ * so it can be loaded and prepared off the render thread.
+ *
+ * Tile layers are stored as tile gids with flip flags removed, 0 is an empty cell,
+ * and rows are ordered bottom to top to match the world's y-up coordinates.
+ */
+public class Room {
+
+    public static class Tileset {
+        public int firstGid;
+        public int tileCount;
+        public int columns;
+        public int tileWidth;
+        public int tileHeight;
+        public int spacing;
+        public int margin;
+        public String image; // path of the tileset image, resolved relative to the room file
+    }
+
+    public static class Layer {
+        public String name;
+        public int[] gids;      // loaded from tmx
+        public ShortBuffer ids; // loaded from a baked room, a view into the mapped file
+    }
+
+    public static class Spawner {
+        public String target;
+        // position in map pixels, y-up, already flipped from tiled's y-down coordinates
+        public int x;
+        public int y;
+    }
+
+    // location of this room in the grid of rooms, from its 'room_XxY' name
+    public int roomX;
+    public int roomY;
+
+    public int columns;
+    public int rows;
+    public int tileWidth;
+    public int tileHeight;
+
+    public final Array<Tileset> tilesets = new Array<>();
+    public final Array<Layer> layers = new Array<>();
+    public final Array<Spawner> spawners = new Array<>();
+
+    // collision bitset from a baked room, one bit per cell in the same order as layers, otherwise null
+    public LongBuffer solids;
+    private Layer collision;
+
+    public static String filename(int roomX, int roomY) {
+        return "maps/room_" + roomX + "x" + roomY + ".tmx";
+    }
+
+    public static String bakedFilename(int roomX, int roomY) {
+        return "maps/room_" + roomX + "x" + roomY + ".room";
+    }
+
+    /**
+     * Rooms are laid out edge to edge, so a room's world position is its grid location times its size
+     */
+    public int originX() { return roomX * width(); }
+    public int originY() { return roomY * height(); }
+    public int width()   { return columns * tileWidth; }
+    public int height()  { return rows * tileHeight; }
+
+    public Layer layer(String name) {
+        for (var layer : layers) {
+            if (layer.name.equals(name)) {
+                return layer;
+            }
+        }
+        return null;
+    }
+
+    public int gid(Layer layer, int x, int y) {
+        var index = x + y * columns;
+        return (layer.gids != null) ? layer.gids[index] : layer.ids.get(index) & 0xFFFF;
+    }
+
+    /**
+     * @return whether the cell is solid, from the baked collision bitset if there is one,
+     *         otherwise from whether there's a tile in the 'collision' layer
+     */
+    public boolean solid(int x, int y) {
+        var index = x + y * columns;
+        if (solids != null) {
+            return (solids.get(index >>> 6) & (1L << index)) != 0;
+        }
+        if (collision == null) {
+            collision = layer("collision");
+            if (collision == null) return false;
+        }
+        return gid(collision, x, y) != 0;
+    }
+
+    /**
+     * @return the tileset that the specified gid belongs to, or null if there isn't one
+     */
+    public Tileset tileset(int gid) {
+        Tileset result = null;
+        for (var tileset : tilesets) {
+            if (tileset.firstGid <= gid && (result == null || tileset.firstGid > result.firstGid)) {
+                result = tileset;
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,263 @@
+package zendo.games.zenlib.assets;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.StreamUtils;
+import lombok.var;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary form of a {@link Room}, baked offline from tmx by RoomBaker.
+ *
+ * Everything is little endian, and arrays are aligned to 8 bytes so that
+ * layers and the collision bitset can be used as views straight into the mapped file:
+ * <pre>
+ * int magic, version, sourceHash
+ * int columns, rows, tileWidth, tileHeight
+ * int tilesetCount, { int firstGid, tileCount, columns, tileWidth, tileHeight, spacing, margin; string image }
+ * int layerCount, { string name; align; u16 ids[columns * rows] }
+ * int solidsLength; align; long solids[solidsLength]
+ * int spawnerCount, { int x, y; string target }
+ * </pre>
+ * strings are a u16 byte length followed by utf-8 bytes, tileset images are relative to the room file,
+ * and sourceHash is the {@link #hash(FileHandle)} of the tmx file the room was baked from
+ */
+public class RoomBinary {
+
+    static final int magic = 0x314D525A; // 'ZRM1'
+    static final int version = 2;
+    static final int header_bytes = 12;
+
+    /**
+     * Load a baked room, memory mapping the file where the platform allows it
+     * note - the returned room's layers and collision bitset are views into the file's buffer
+     */
+    public static Room load(FileHandle file, int roomX, int roomY) {
+        ByteBuffer buffer;
+        try {
+            buffer = file.map();
+        } catch (GdxRuntimeException e) {
+            // classpath and android asset files can't be mapped
+            buffer = ByteBuffer.wrap(file.readBytes());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.getInt() != magic) {
+            throw new GdxRuntimeException("Not a baked room file: " + file.path());
+        }
+        var fileVersion = buffer.getInt();
+        if (fileVersion != version) {
+            throw new GdxRuntimeException("Unsupported baked room version " + fileVersion + ": " + file.path());
+        }
+        buffer.getInt(); // sourceHash, only needed by isBakedFrom()
+
+        var room = new Room();
+        room.roomX      = roomX;
+        room.roomY      = roomY;
+        room.columns    = buffer.getInt();
+        room.rows       = buffer.getInt();
+        room.tileWidth  = buffer.getInt();
+        room.tileHeight = buffer.getInt();
+        var cells = room.columns * room.rows;
+
+        var tilesetCount = buffer.getInt();
+        for (int i = 0; i < tilesetCount; i++) {
+            var tileset = new Room.Tileset();
+            tileset.firstGid   = buffer.getInt();
+            tileset.tileCount  = buffer.getInt();
+            tileset.columns    = buffer.getInt();
+            tileset.tileWidth  = buffer.getInt();
+            tileset.tileHeight = buffer.getInt();
+            tileset.spacing    = buffer.getInt();
+            tileset.margin     = buffer.getInt();
+            tileset.image      = file.parent().child(readString(buffer)).path();
+            room.tilesets.add(tileset);
+        }
+
+        var layerCount = buffer.getInt();
+        for (int i = 0; i < layerCount; i++) {
+            var layer = new Room.Layer();
+            layer.name = readString(buffer);
+            layer.ids = view(buffer, cells * 2).asShortBuffer();
+            room.layers.add(layer);
+        }
+
+        var solidsLength = buffer.getInt();
+        room.solids = view(buffer, solidsLength * 8).asLongBuffer();
+
+        var spawnerCount = buffer.getInt();
+        for (int i = 0; i < spawnerCount; i++) {
+            var spawner = new Room.Spawner();
+            spawner.x = buffer.getInt();
+            spawner.y = buffer.getInt();
+            spawner.target = readString(buffer);
+            if (spawner.target.isEmpty()) {
+                spawner.target = null;
+            }
+            room.spawners.add(spawner);
+        }
+
+        return room;
+    }
+
+    /**
+     * @return a hash of the source file's contents, stored in the baked room to tell whether it's out of date
+     */
+    public static int hash(FileHandle source) {
+        var crc = new CRC32();
+        crc.update(source.readBytes());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Check whether a baked room is current, by reading just its header
+     *
+     * @return true if the baked room has the current version and was baked from the source file as it is now
+     */
+    public static boolean isBakedFrom(FileHandle baked, FileHandle source) {
+        var header = new byte[header_bytes];
+        var input = new DataInputStream(baked.read());
+        try {
+            input.readFully(header);
+        } catch (IOException e) {
+            return false;
+        } finally {
+            StreamUtils.closeQuietly(input);
+        }
+
+        var buffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+        return buffer.getInt() == magic
+            && buffer.getInt() == version
+            && buffer.getInt() == hash(source);
+    }
+
+    /**
+     * Write a room in the baked format
+     *
+     * @param directory path of the directory the room file is in, used to make tileset image paths relative
+     * @param sourceHash {@link #hash(FileHandle)} of the tmx file the room was read from
+     */
+    public static byte[] write(Room room, String directory, int sourceHash) {
+        var out = new Output();
+        var cells = room.columns * room.rows;
+
+        out.writeInt(magic);
+        out.writeInt(version);
+        out.writeInt(sourceHash);
+        out.writeInt(room.columns);
+        out.writeInt(room.rows);
+        out.writeInt(room.tileWidth);
+        out.writeInt(room.tileHeight);
+
+        out.writeInt(room.tilesets.size);
+        for (var tileset : room.tilesets) {
+            var image = tileset.image;
+            if (image.startsWith(directory + "/")) {
+                image = image.substring(directory.length() + 1);
+            }
+            out.writeInt(tileset.firstGid);
+            out.writeInt(tileset.tileCount);
+            out.writeInt(tileset.columns);
+            out.writeInt(tileset.tileWidth);
+            out.writeInt(tileset.tileHeight);
+            out.writeInt(tileset.spacing);
+            out.writeInt(tileset.margin);
+            out.writeString(image);
+        }
+
+        out.writeInt(room.layers.size);
+        for (var layer : room.layers) {
+            out.writeString(layer.name);
+            out.align();
+            for (int i = 0; i < cells; i++) {
+                var gid = room.gid(layer, i % room.columns, i / room.columns);
+                if (gid > 0xFFFF) {
+                    throw new GdxRuntimeException("Tile gid " + gid + " in layer '" + layer.name + "' doesn't fit in 16 bits");
+                }
+                out.writeShort(gid);
+            }
+        }
+
+        var solids = new long[(cells + 63) / 64];
+        for (int i = 0; i < cells; i++) {
+            if (room.solid(i % room.columns, i / room.columns)) {
+                solids[i >>> 6] |= (1L << i);
+            }
+        }
+        out.writeInt(solids.length);
+        out.align();
+        for (var bits : solids) {
+            out.writeLong(bits);
+        }
+
+        out.writeInt(room.spawners.size);
+        for (var spawner : room.spawners) {
+            out.writeInt(spawner.x);
+            out.writeInt(spawner.y);
+            out.writeString((spawner.target != null) ? spawner.target : "");
+        }
+
+        return out.toByteArray();
+    }
+
+    // ------------------------------------------------------------------------
+
+    private static String readString(ByteBuffer buffer) {
+        var length = buffer.getShort() & 0xFFFF;
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Skip alignment padding, then slice off the next length bytes as a little endian view
+     */
+    private static ByteBuffer view(ByteBuffer buffer, int length) {
+        // note - the casts to Buffer keep this runnable on java 8 when built with a newer jdk
+        var aligned = (buffer.position() + 7) & ~7;
+        ((Buffer) buffer).position(aligned);
+        var view = buffer.slice();
+        view.order(ByteOrder.LITTLE_ENDIAN);
+        ((Buffer) view).limit(length);
+        ((Buffer) buffer).position(aligned + length);
+        return view;
+    }
+
+    private static class Output extends ByteArrayOutputStream {
+        void writeShort(int value) {
+            write(value);
+            write(value >>> 8);
+        }
+
+        void writeInt(int value) {
+            writeShort(value);
+            writeShort(value >>> 16);
+        }
+
+        void writeLong(long value) {
+            writeInt((int) value);
+            writeInt((int) (value >>> 32));
+        }
+
+        void writeString(String value) {
+            var bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeShort(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        void align() {
+            while (size() % 8 != 0) {
+                write(0);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+package zendo.games.zenlib.assets;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import lombok.var;
+
+/**
+ * Loads rooms from baked .room files or tiled .tmx files without touching GL,
+ * unlike TmxMapLoader, so it's safe to call from a background thread
+ */
+public class RoomLoader {
+
+    private static final String tag = RoomLoader.class.getSimpleName();
+
+    /**
+     * Load the specified room, preferring the baked version of it if there is one
+     * and it was baked from the current tmx file, or if there's no tmx file to check it against
+     *
+     * @return the room, or null if there's no file for it
+     */
+    public static Room load(int roomX, int roomY) {
+        var baked = Gdx.files.internal(Room.bakedFilename(roomX, roomY));
+        var tmx = Gdx.files.internal(Room.filename(roomX, roomY));
+        if (baked.exists()) {
+            if (!tmx.exists() || RoomBinary.isBakedFrom(baked, tmx)) {
+                return RoomBinary.load(baked, roomX, roomY);
+            }
+            Gdx.app.log(tag, "Baked room is out of date, loading " + tmx.path() + " instead, run bakeRooms to update it");
+        }
+        if (tmx.exists()) {
+            return load(tmx, roomX, roomY);
+        }
+        return null;
+    }
+
+    public static boolean exists(int roomX, int roomY) {
+        return Gdx.files.internal(Room.bakedFilename(roomX, roomY)).exists()
+            || Gdx.files.internal(Room.filename(roomX, roomY)).exists();
+    }
+
+    public static Room load(FileHandle file, int roomX, int roomY) {
+        return TmxReader.read(file, roomX, roomY);
+    }
+
+}
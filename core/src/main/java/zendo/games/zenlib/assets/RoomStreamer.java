@@ -0,0 +1,269 @@
+package zendo.games.zenlib.assets;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.IntSet;
+import com.badlogic.gdx.utils.async.AsyncExecutor;
+import com.badlogic.gdx.utils.async.AsyncResult;
+import lombok.var;
+import zendo.games.zenlib.utils.RectI;
+
+/**
+ * Streams the grid of 'room_XxY' rooms around the current room.
+ *
+ * Neighboring rooms are loaded and prepared on background threads, then handed to the listener
+ * from {@link #update(int, int)}, which should be called once per tick, before the world updates,
+ * so rooms are only ever added to or removed from the world at a tick boundary.
+ *
+ * @param <T> whatever the listener prepares for a room on the background thread
+ */
+public class RoomStreamer<T> implements Disposable {
+
+    private static final String tag = RoomStreamer.class.getSimpleName();
+
+    public interface Listener<T> {
+        /**
+         * Called on a background thread, must not touch GL or the world
+         */
+        T prepare(Room room);
+
+        /**
+         * Called from update(), add the prepared room to the world
+         */
+        void loaded(Room room, T prepared);
+
+        /**
+         * Called from update(), remove the room from the world
+         */
+        void unloaded(Room room, T prepared);
+
+        /**
+         * Called from update() for a room that was prepared but is too far away to commit by the time it's ready,
+         * release anything prepare() holds on to
+         */
+        default void discarded(Room room, T prepared) {}
+    }
+
+    private static class Loaded<T> {
+        Room room;
+        T prepared;
+    }
+
+    // rooms within this many rooms of the current room are loaded ahead of time
+    public int prefetchRadius = 1;
+
+    // rooms farther than this many rooms from the current room are unloaded
+    public int unloadRadius = 2;
+
+    // limit how many prepared rooms are committed per tick so a burst of finished loads doesn't hitch
+    public int commitsPerTick = 1;
+
+    private final Listener<T> listener;
+    private final AsyncExecutor executor;
+
+    private final IntMap<Loaded<T>> rooms = new IntMap<>();
+    private final IntMap<AsyncResult<Loaded<T>>> pending = new IntMap<>();
+    private final IntSet missing = new IntSet();
+    private final IntArray keys = new IntArray();
+
+    public RoomStreamer(Listener<T> listener) {
+        this(listener, 2);
+    }
+
+    public RoomStreamer(Listener<T> listener, int threads) {
+        this.listener = listener;
+        this.executor = new AsyncExecutor(threads, "room-streamer");
+    }
+
+    /**
+     * Load and commit the specified room right away, blocking until it's ready
+     * note - intended for the first room, when there's nothing on screen to hitch yet
+     *
+     * @return the room, or null if it doesn't exist
+     */
+    public Room load(int roomX, int roomY) {
+        var key = key(roomX, roomY);
+        var loaded = rooms.get(key);
+        if (loaded != null) {
+            return loaded.room;
+        }
+
+        var result = pending.remove(key);
+        try {
+            loaded = (result != null) ? result.get() : (exists(key) ? prepare(roomX, roomY) : null);
+        } catch (GdxRuntimeException e) {
+            Gdx.app.error(tag, "Failed to load " + Room.filename(roomX, roomY), e);
+            missing.add(key);
+            loaded = null;
+        }
+        if (loaded == null) {
+            return null;
+        }
+
+        commit(key, loaded);
+        return loaded.room;
+    }
+
+    /**
+     * Commit rooms that have finished loading, request neighbors of the current room,
+     * and unload rooms that are too far away
+     */
+    public void update(int roomX, int roomY) {
+        // commit rooms that finished loading
+        var commits = 0;
+        keys.clear();
+        for (var entry : pending) {
+            if (entry.value.isDone()) {
+                keys.add(entry.key);
+            }
+        }
+        for (int i = 0; i < keys.size && commits < commitsPerTick; i++) {
+            var key = keys.get(i);
+            var result = pending.remove(key);
+
+            Loaded<T> loaded;
+            try {
+                loaded = result.get();
+            } catch (GdxRuntimeException e) {
+                Gdx.app.error(tag, "Failed to load " + Room.filename(keyX(key), keyY(key)), e);
+                missing.add(key);
+                continue;
+            }
+
+            // drop rooms that we've moved away from while they were loading
+            if (distance(key, roomX, roomY) > unloadRadius) {
+                listener.discarded(loaded.room, loaded.prepared);
+                continue;
+            }
+
+            commit(key, loaded);
+            commits++;
+        }
+
+        // request neighboring rooms
+        for (int y = roomY - prefetchRadius; y <= roomY + prefetchRadius; y++) {
+            for (int x = roomX - prefetchRadius; x <= roomX + prefetchRadius; x++) {
+                var key = key(x, y);
+                if (rooms.containsKey(key) || pending.containsKey(key) || !exists(key)) continue;
+
+                final int loadX = x;
+                final int loadY = y;
+                pending.put(key, executor.submit(() -> prepare(loadX, loadY)));
+            }
+        }
+
+        // unload distant rooms
+        keys.clear();
+        for (var entry : rooms) {
+            if (distance(entry.key, roomX, roomY) > unloadRadius) {
+                keys.add(entry.key);
+            }
+        }
+        for (int i = 0; i < keys.size; i++) {
+            var loaded = rooms.remove(keys.get(i));
+            listener.unloaded(loaded.room, loaded.prepared);
+        }
+    }
+
+    public Room get(int roomX, int roomY) {
+        var loaded = rooms.get(key(roomX, roomY));
+        return (loaded != null) ? loaded.room : null;
+    }
+
+    public boolean isLoaded(int roomX, int roomY) {
+        return rooms.containsKey(key(roomX, roomY));
+    }
+
+    public int loadedCount() {
+        return rooms.size;
+    }
+
+    public int pendingCount() {
+        return pending.size;
+    }
+
+    /**
+     * @return the union of the world space bounds of the rooms that are currently committed
+     */
+    public RectI bounds(RectI out) {
+        var first = true;
+        for (var entry : rooms) {
+            var room = entry.value.room;
+            var left   = room.originX();
+            var bottom = room.originY();
+            var right  = left + room.width();
+            var top    = bottom + room.height();
+            if (first) {
+                out.set(left, bottom, right - left, top - bottom);
+                first = false;
+            } else {
+                var minX = Math.min(out.x, left);
+                var minY = Math.min(out.y, bottom);
+                var maxX = Math.max(out.x + out.w, right);
+                var maxY = Math.max(out.y + out.h, top);
+                out.set(minX, minY, maxX - minX, maxY - minY);
+            }
+        }
+        if (first) {
+            out.set(0, 0, 0, 0);
+        }
+        return out;
+    }
+
+    @Override
+    public void dispose() {
+        executor.dispose();
+        for (var entry : rooms) {
+            listener.unloaded(entry.value.room, entry.value.prepared);
+        }
+        rooms.clear();
+        pending.clear();
+    }
+
+    // ------------------------------------------------------------------------
+
+    private Loaded<T> prepare(int roomX, int roomY) {
+        var loaded = new Loaded<T>();
+        loaded.room = RoomLoader.load(roomX, roomY);
+        if (loaded.room == null) {
+            throw new GdxRuntimeException("Missing room " + Room.filename(roomX, roomY));
+        }
+        loaded.prepared = listener.prepare(loaded.room);
+        return loaded;
+    }
+
+    private void commit(int key, Loaded<T> loaded) {
+        rooms.put(key, loaded);
+        listener.loaded(loaded.room, loaded.prepared);
+    }
+
+    private boolean exists(int key) {
+        if (missing.contains(key)) return false;
+        if (!RoomLoader.exists(keyX(key), keyY(key))) {
+            missing.add(key);
+            return false;
+        }
+        return true;
+    }
+
+    // room coordinates are packed into 16 bits each
+    private static int key(int roomX, int roomY) {
+        return (roomX & 0xFFFF) | (roomY << 16);
+    }
+
+    private static int keyX(int key) {
+        return (short) key;
+    }
+
+    private static int keyY(int key) {
+        return key >> 16;
+    }
+
+    private static int distance(int key, int roomX, int roomY) {
+        return Math.max(Math.abs(keyX(key) - roomX), Math.abs(keyY(key) - roomY));
+    }
+
+}
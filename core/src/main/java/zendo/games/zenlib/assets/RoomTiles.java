@@ -0,0 +1,169 @@
+package zendo.games.zenlib.assets;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.ObjectMap;
+import lombok.var;
+
+/**
+ * Texture regions for room tilesets, textures are loaded the first time a tileset is used
+ * and are referenced by the rooms that use them, so they can be evicted once no loaded room needs them
+ *
+ * {@link #prepare(Room)} decodes a room's tileset images on any thread,
+ * so acquiring the room on the render thread only has to upload them.
+ * note - everything else creates textures, so only use it from the render thread
+ */
+public class RoomTiles implements Disposable {
+
+    private static final String tag = RoomTiles.class.getSimpleName();
+
+    private static class Tileset extends TextureBudget.Resident {
+        Texture texture;
+        TextureRegion[] tiles;
+        // decoded but not yet uploaded, guarded by the tileset
+        Pixmap decoded;
+
+        @Override
+        protected void evict() {
+            texture.dispose();
+            texture = null;
+            tiles = null;
+        }
+    }
+
+    private final ObjectMap<String, Tileset> tilesets = new ObjectMap<>();
+    private final TextureBudget budget;
+
+    public RoomTiles(TextureBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Decode the images for the room's tilesets that aren't resident, without uploading them
+     * note - safe to call from any thread
+     */
+    public void prepare(Room room) {
+        for (var tileset : room.tilesets) {
+            var loaded = find(tileset.image);
+            synchronized (loaded) {
+                // note - a tileset that's evicted after this check is decoded again when it's acquired
+                if (loaded.isResident() || loaded.decoded != null) continue;
+                loaded.decoded = new Pixmap(Gdx.files.internal(tileset.image));
+            }
+        }
+    }
+
+    /**
+     * Hold a reference to the room's tilesets, loading them if they aren't resident
+     */
+    public void acquire(Room room) {
+        for (var tileset : room.tilesets) {
+            budget.acquire(load(tileset));
+        }
+    }
+
+    /**
+     * Release the room's references, its tilesets can be evicted once no other room uses them
+     * note - texture regions from this room's tilesets shouldn't be used after this
+     */
+    public void release(Room room) {
+        for (var tileset : room.tilesets) {
+            var loaded = find(tileset.image);
+            if (loaded != null && loaded.isResident()) {
+                budget.release(loaded);
+            }
+        }
+    }
+
+    /**
+     * @return the texture region for the specified gid in the room, or null for empty cells
+     */
+    public TextureRegion region(Room room, int gid) {
+        if (gid == 0) return null;
+
+        var tileset = room.tileset(gid);
+        if (tileset == null) return null;
+
+        var tiles = load(tileset).tiles;
+        var index = gid - tileset.firstGid;
+        return (index < tiles.length) ? tiles[index] : null;
+    }
+
+    public boolean isResident(String image) {
+        Tileset tileset;
+        synchronized (tilesets) {
+            tileset = tilesets.get(image);
+        }
+        return (tileset != null && tileset.isResident());
+    }
+
+    private Tileset find(String image) {
+        synchronized (tilesets) {
+            var tileset = tilesets.get(image);
+            if (tileset == null) {
+                tileset = new Tileset();
+                tilesets.put(image, tileset);
+            }
+            return tileset;
+        }
+    }
+
+    private Tileset load(Room.Tileset tileset) {
+        var loaded = find(tileset.image);
+        if (loaded.isResident()) {
+            budget.touch(loaded);
+            return loaded;
+        }
+
+        Pixmap pixmap;
+        synchronized (loaded) {
+            pixmap = loaded.decoded;
+            loaded.decoded = null;
+        }
+        if (pixmap == null) {
+            Gdx.app.debug(tag, "Tileset wasn't prepared, loading it on the render thread: " + tileset.image);
+            pixmap = new Pixmap(Gdx.files.internal(tileset.image));
+        }
+        var texture = new Texture(pixmap);
+        pixmap.dispose();
+        texture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
+
+        var stepX = tileset.tileWidth + tileset.spacing;
+        var stepY = tileset.tileHeight + tileset.spacing;
+        var columns = (tileset.columns > 0) ? tileset.columns : (texture.getWidth() - tileset.margin + tileset.spacing) / stepX;
+        var count = (tileset.tileCount > 0) ? tileset.tileCount : columns * ((texture.getHeight() - tileset.margin + tileset.spacing) / stepY);
+
+        var tiles = new TextureRegion[count];
+        for (int i = 0; i < count; i++) {
+            var x = tileset.margin + (i % columns) * stepX;
+            var y = tileset.margin + (i / columns) * stepY;
+            tiles[i] = new TextureRegion(texture, x, y, tileset.tileWidth, tileset.tileHeight);
+        }
+
+        loaded.texture = texture;
+        loaded.tiles = tiles;
+        budget.add(loaded, "tileset:" + tileset.image, TextureBudget.bytes(texture));
+        return loaded;
+    }
+
+    @Override
+    public void dispose() {
+        for (var tileset : tilesets.values()) {
+            synchronized (tileset) {
+                if (tileset.decoded != null) {
+                    tileset.decoded.dispose();
+                    tileset.decoded = null;
+                }
+            }
+            if (tileset.isResident()) {
+                budget.remove(tileset);
+                tileset.evict();
+            }
+        }
+        tilesets.clear();
+    }
+
+}
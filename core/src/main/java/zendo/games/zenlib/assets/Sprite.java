@@ -15,6 +15,9 @@ public class Sprite {
         public TextureRegion image;
         public RectI hitbox = null;
         public float duration; // in seconds
+        // the image is trimmed of transparent borders, this is where it sits in the untrimmed frame, y-up
+        public int offsetX;
+        public int offsetY;
         public Frame(TextureRegion image) {
             this(image, 0.1f);
         }
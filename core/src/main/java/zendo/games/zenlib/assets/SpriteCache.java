@@ -0,0 +1,227 @@
+package zendo.games.zenlib.assets;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.PixmapPackerIO;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.StreamUtils;
+import lombok.var;
+import zendo.games.zenlib.utils.RectI;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Caches packed sprite atlas pages and the Sprite data that refers to them,
+ * keyed by a hash of the source files and the packer settings,
+ * so startup can skip decoding and packing when nothing has changed.
+ *
+ * Each entry is a '[key].atlas' file with its page images, written by PixmapPackerIO,
+ * and a '[key].sprites' file with sprite names, origins, animations, frame regions, durations, trim offsets and hitboxes.
+ * Only the most recently saved entry is kept, older ones are deleted when a new one is saved.
+ */
+public class SpriteCache {
+
+    private static final String tag = SpriteCache.class.getSimpleName();
+
+    // bump when the metadata format or the way sprites are built changes, so old entries are ignored
+    static final int version = 2;
+
+    private final FileHandle directory;
+
+    public SpriteCache(FileHandle directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Hash the contents of the source files along with the packer settings
+     *
+     * @param settings a description of everything that affects packing, like page size, padding and strategy
+     * @param paths internal paths of the source files
+     */
+    public static String key(String settings, String... paths) {
+        var files = new FileHandle[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            files[i] = Gdx.files.internal(paths[i]);
+        }
+        return key(settings, files);
+    }
+
+    public static String key(String settings, FileHandle... files) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new GdxRuntimeException("Unable to hash sprite sources", e);
+        }
+
+        digest.update(("v" + version + ";" + settings).getBytes(StandardCharsets.UTF_8));
+        for (var file : files) {
+            digest.update((";" + file.path() + ";").getBytes(StandardCharsets.UTF_8));
+            digest.update(file.readBytes());
+        }
+
+        var hash = digest.digest();
+        var key = new StringBuilder(hash.length * 2);
+        for (var b : hash) {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16));
+            key.append(Character.forDigit(b & 0xF, 16));
+        }
+        return key.toString();
+    }
+
+    public boolean has(String key) {
+        return atlasFile(key).exists() && spritesFile(key).exists();
+    }
+
+    /**
+     * Parse the cached atlas description without creating textures, so it's safe to call from any thread
+     */
+    public TextureAtlas.TextureAtlasData loadAtlasData(String key) {
+        var file = atlasFile(key);
+        return new TextureAtlas.TextureAtlasData(file, file.parent(), false);
+    }
+
+    /**
+     * Read the cached sprites, with frame images found in the cached atlas
+     */
+    public Array<Sprite> loadSprites(String key, TextureAtlas atlas) {
+        var sprites = new Array<Sprite>();
+        var input = new DataInputStream(spritesFile(key).read(4096));
+        try {
+            if (input.readInt() != version) {
+                throw new GdxRuntimeException("Sprite cache version mismatch: " + spritesFile(key).path());
+            }
+
+            var num_sprites = input.readInt();
+            for (int i = 0; i < num_sprites; i++) {
+                var sprite = new Sprite();
+                sprite.name = input.readUTF();
+                sprite.origin.set(input.readFloat(), input.readFloat());
+
+                var num_anims = input.readInt();
+                for (int j = 0; j < num_anims; j++) {
+                    var anim_name = input.readUTF();
+                    var frames = new Sprite.Frame[input.readInt()];
+                    for (int k = 0; k < frames.length; k++) {
+                        var region_name = input.readUTF();
+                        var region_index = input.readInt();
+                        var duration = input.readFloat();
+
+                        var region = atlas.findRegion(region_name, region_index);
+                        if (region == null) {
+                            throw new GdxRuntimeException("Sprite cache is missing region " + region_name + "_" + region_index);
+                        }
+                        frames[k] = new Sprite.Frame(region, duration);
+                        frames[k].offsetX = input.readInt();
+                        frames[k].offsetY = input.readInt();
+
+                        if (input.readBoolean()) {
+                            frames[k].hitbox = RectI.at(input.readInt(), input.readInt(), input.readInt(), input.readInt());
+                        }
+                    }
+                    sprite.animations.add(new Sprite.Anim(anim_name, frames));
+                }
+                sprites.add(sprite);
+            }
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Unable to read sprite cache: " + spritesFile(key).path(), e);
+        } finally {
+            StreamUtils.closeQuietly(input);
+        }
+        return sprites;
+    }
+
+    /**
+     * Write the packer's pages and the sprites built from them to the cache,
+     * failures are logged rather than thrown since the cache is only an optimization
+     * note - call this before the packer is disposed
+     */
+    public void save(String key, PixmapPacker packer, Texture.TextureFilter filter, Array<Sprite> sprites) {
+        DataOutputStream output = null;
+        try {
+            directory.mkdirs();
+            prune(key);
+
+            // pack names are 'name_index', so let the atlas store the index separately for findRegion(name, index)
+            var parameters = new PixmapPackerIO.SaveParameters();
+            parameters.format = PixmapPackerIO.ImageFormat.PNG;
+            parameters.useIndexes = true;
+            parameters.minFilter = filter;
+            parameters.magFilter = filter;
+            new PixmapPackerIO().save(atlasFile(key), packer, parameters);
+
+            output = new DataOutputStream(spritesFile(key).write(false));
+            output.writeInt(version);
+            output.writeInt(sprites.size);
+            for (var sprite : sprites) {
+                output.writeUTF(sprite.name);
+                output.writeFloat(sprite.origin.x);
+                output.writeFloat(sprite.origin.y);
+
+                output.writeInt(sprite.animations.size());
+                for (var anim : sprite.animations) {
+                    output.writeUTF(anim.name);
+                    output.writeInt(anim.frames.size());
+                    for (var frame : anim.frames) {
+                        if (!(frame.image instanceof TextureAtlas.AtlasRegion)) {
+                            throw new GdxRuntimeException("Sprite '" + sprite.name + "' has a frame that isn't from an atlas");
+                        }
+                        var region = (TextureAtlas.AtlasRegion) frame.image;
+                        output.writeUTF(region.name);
+                        output.writeInt(region.index);
+                        output.writeFloat(frame.duration);
+                        output.writeInt(frame.offsetX);
+                        output.writeInt(frame.offsetY);
+
+                        output.writeBoolean(frame.hitbox != null);
+                        if (frame.hitbox != null) {
+                            output.writeInt(frame.hitbox.x);
+                            output.writeInt(frame.hitbox.y);
+                            output.writeInt(frame.hitbox.w);
+                            output.writeInt(frame.hitbox.h);
+                        }
+                    }
+                }
+            }
+        } catch (IOException | GdxRuntimeException e) {
+            Gdx.app.error(tag, "Unable to write sprite cache, it will be rebuilt next time", e);
+            StreamUtils.closeQuietly(output);
+            output = null;
+            atlasFile(key).delete();
+            spritesFile(key).delete();
+        } finally {
+            StreamUtils.closeQuietly(output);
+        }
+    }
+
+    /**
+     * Delete everything in the cache directory that doesn't belong to the specified entry,
+     * entries for older versions of the sources would otherwise pile up with every edit
+     * note - page images are named '[key][page].png', so everything in an entry starts with its key
+     */
+    void prune(String key) {
+        for (var file : directory.list()) {
+            if (!file.name().startsWith(key)) {
+                file.delete();
+            }
+        }
+    }
+
+    private FileHandle atlasFile(String key) {
+        return directory.child(key + ".atlas");
+    }
+
+    private FileHandle spritesFile(String key) {
+        return directory.child(key + ".sprites");
+    }
+
+}
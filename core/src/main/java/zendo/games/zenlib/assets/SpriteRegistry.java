@@ -0,0 +1,476 @@
+package zendo.games.zenlib.assets;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectMap;
+import lombok.var;
+import zendo.games.zenlib.utils.Aseprite;
+
+/**
+ * Sprites by name, decoded from their Aseprite files the first time they're used.
+ *
+ * Sprites are registered up front with the path they come from, and optionally put in named groups.
+ * {@link #preloadJob(String, PackListener)} decodes and packs a group into one shared atlas on a loader thread,
+ * leaving only the upload for the render thread, {@link #prefetch(String)} decodes a sprite or group ahead of time
+ * on any thread, and {@link #preload(String)} does the same as the job, all at once on the render thread.
+ * {@link #get(String)} still loads a sprite that wasn't preloaded on first use, but that hitches, so it's logged.
+ *
+ * Each atlas is a {@link TextureBudget.Resident}, referenced by the sprites that are acquired from it.
+ * Once nothing references an atlas it can be evicted to stay within the texture budget,
+ * and its sprites are loaded again the next time they're asked for.
+ */
+public class SpriteRegistry implements Disposable {
+
+    private static final String tag = SpriteRegistry.class.getSimpleName();
+
+    public interface PackerFactory {
+        PixmapPacker create();
+    }
+
+    public interface PackListener {
+        /**
+         * Called after a group is packed, before the packer is disposed
+         */
+        void packed(String group, PixmapPacker packer, Array<Sprite> sprites);
+    }
+
+    private static class Entry {
+        String name;
+        String path;
+        // only written on the render thread, read from loader threads to skip loaded sprites
+        volatile Sprite sprite;
+        Atlas atlas;
+        // decoded but not yet packed, guarded by the entry
+        Aseprite.SpriteInfo decoded;
+    }
+
+    /**
+     * Sprites that have been packed, on any thread, waiting for their atlas to be created on the render thread
+     */
+    private static class Packed {
+        String name;
+        PixmapPacker packer;
+        final Array<Entry> entries = new Array<>();
+        final Array<Aseprite.SpriteInfo> infos = new Array<>();
+    }
+
+    private class Atlas extends TextureBudget.Resident {
+        TextureAtlas atlas;
+        final Array<Entry> entries = new Array<>();
+
+        @Override
+        protected void evict() {
+            for (var entry : entries) {
+                entry.sprite = null;
+                entry.atlas = null;
+            }
+            entries.clear();
+            atlas.dispose();
+            atlas = null;
+        }
+    }
+
+    // note - guarded by itself, sprites restored from the cache can be added while loader threads look up entries
+    private final ObjectMap<String, Entry> entries = new ObjectMap<>();
+    private final ObjectMap<String, Array<String>> groups = new ObjectMap<>();
+
+    private final PackerFactory packers;
+    private final Texture.TextureFilter filter;
+    private final TextureBudget budget;
+
+    /**
+     * @param packers creates a configured packer for each atlas
+     * @param budget shared with other texture owners, sprite atlases are evicted when it's exceeded
+     */
+    public SpriteRegistry(PackerFactory packers, Texture.TextureFilter filter, TextureBudget budget) {
+        this.packers = packers;
+        this.filter = filter;
+        this.budget = budget;
+    }
+
+    /**
+     * Register a sprite that's loaded from the specified Aseprite file when it's first needed
+     * note - registration isn't thread safe, do it before anything is loaded
+     */
+    public void register(String name, String path) {
+        var entry = new Entry();
+        entry.name = name;
+        entry.path = path;
+        synchronized (entries) {
+            entries.put(name, entry);
+        }
+    }
+
+    /**
+     * Take ownership of an atlas and sprites that have already been built, like ones restored from the sprite cache
+     */
+    public void add(String name, TextureAtlas textureAtlas, Array<Sprite> sprites) {
+        var atlas = new Atlas();
+        atlas.atlas = textureAtlas;
+        for (var sprite : sprites) {
+            Entry entry;
+            synchronized (entries) {
+                entry = entries.get(sprite.name);
+                if (entry == null) {
+                    entry = new Entry();
+                    entry.name = sprite.name;
+                    entries.put(sprite.name, entry);
+                }
+            }
+            entry.sprite = sprite;
+            entry.atlas = atlas;
+            atlas.entries.add(entry);
+        }
+        track(atlas, name);
+    }
+
+    /**
+     * Name a set of sprites that are used together, so they can be prefetched or preloaded together
+     */
+    public void group(String group, String... names) {
+        var members = new Array<String>(names.length);
+        for (var name : names) {
+            if (entry(name) == null) {
+                throw new GdxRuntimeException("Sprite group '" + group + "' refers to unregistered sprite '" + name + "'");
+            }
+            members.add(name);
+        }
+        groups.put(group, members);
+    }
+
+    public boolean has(String name) {
+        return entry(name) != null;
+    }
+
+    public boolean hasGroup(String group) {
+        return groups.containsKey(group);
+    }
+
+    public boolean isLoaded(String name) {
+        var entry = entry(name);
+        return (entry != null && entry.sprite != null);
+    }
+
+    /**
+     * Find a sprite by name, loading it into an atlas of its own first if it isn't loaded
+     * note - must be called on the render thread,
+     *        and the sprite may be evicted unless it's acquired before anything else is loaded
+     *
+     * @return the sprite, or null if there's no sprite registered with that name
+     */
+    public Sprite get(String name) {
+        var entry = entry(name);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.sprite == null) {
+            // this decodes, packs and uploads mid-frame, the sprite's group should have been preloaded through the loader
+            Gdx.app.error(tag, "Sprite '" + name + "' wasn't preloaded, loading it on the render thread");
+            var members = new Array<Entry>(1);
+            members.add(entry);
+            commit(pack(name, members), members, null);
+        } else {
+            budget.touch(entry.atlas);
+        }
+        return entry.sprite;
+    }
+
+    /**
+     * Hold a reference to a sprite so its atlas stays resident until it's released
+     */
+    public void acquire(Sprite sprite) {
+        var entry = find(sprite);
+        if (entry == null) return;
+        budget.acquire(entry.atlas);
+    }
+
+    public void release(Sprite sprite) {
+        var entry = find(sprite);
+        if (entry == null) return;
+        budget.release(entry.atlas);
+    }
+
+    /**
+     * @return the number of references held to the atlas the named sprite is in,
+     *         the budget's count is the only one, so it covers every sprite sharing that atlas
+     */
+    public int refs(String name) {
+        var entry = entry(name);
+        return (entry != null && entry.atlas != null) ? entry.atlas.refs() : 0;
+    }
+
+    /**
+     * Decode a sprite, or every sprite in a group, without packing it
+     * so a later {@link #get(String)} only has to pack and upload it
+     * note - safe to call from any thread, names that aren't registered are ignored
+     */
+    public void prefetch(String nameOrGroup) {
+        var members = groups.get(nameOrGroup);
+        if (members != null) {
+            for (var name : members) {
+                decode(entry(name));
+            }
+        } else {
+            decode(entry(nameOrGroup));
+        }
+    }
+
+    public Array<Sprite> preload(String group) {
+        return preload(group, null);
+    }
+
+    /**
+     * Preload a group through an {@link AssetLoader}, decoding and packing on a worker thread
+     * then uploading the group's atlas on the render thread, one page per upload step
+     *
+     * @param listener optional, called with the packer if anything was packed
+     */
+    public AssetLoader.Job preloadJob(String group, PackListener listener) {
+        var members = members(group);
+        return new AssetLoader.Job() {
+            Packed packed;
+            int uploadedPages;
+
+            @Override
+            public void load() {
+                packed = pack(group, members);
+            }
+
+            @Override
+            public boolean upload() {
+                // note - the atlas is built from pages that are already uploaded, so the last step only creates regions
+                var pages = packed.packer.getPages();
+                if (needsAtlas(packed) && uploadedPages < pages.size) {
+                    pages.get(uploadedPages++).updateTexture(filter, filter, false);
+                    return false;
+                }
+                commit(packed, members, listener);
+                return true;
+            }
+
+            @Override
+            public void cancel() {
+                if (packed != null) {
+                    discard(packed);
+                    packed = null;
+                }
+            }
+        };
+    }
+
+    /**
+     * Decode the sprites in a group that aren't loaded in parallel, then pack them into one atlas
+     * note - must be called on the render thread, prefer {@link #preloadJob(String, PackListener)} once the game is running
+     *
+     * @param listener optional, called with the packer if anything was packed
+     *
+     * @return the sprites in the group, in the order they were grouped
+     */
+    public Array<Sprite> preload(String group, PackListener listener) {
+        var members = members(group);
+        return commit(pack(group, members), members, listener);
+    }
+
+    @Override
+    public void dispose() {
+        for (var entry : entries.values()) {
+            synchronized (entry) {
+                if (entry.decoded != null) {
+                    Aseprite.dispose(entry.decoded);
+                    entry.decoded = null;
+                }
+            }
+            if (entry.atlas != null && entry.atlas.isResident()) {
+                budget.remove(entry.atlas);
+                entry.atlas.evict();
+            }
+        }
+        entries.clear();
+        groups.clear();
+    }
+
+    // ------------------------------------------------------------------------
+
+    private Entry entry(String name) {
+        synchronized (entries) {
+            return entries.get(name);
+        }
+    }
+
+    private Array<Entry> members(String group) {
+        var names = groups.get(group);
+        if (names == null) {
+            throw new GdxRuntimeException("No sprite group named '" + group + "'");
+        }
+        var members = new Array<Entry>(names.size);
+        for (var name : names) {
+            members.add(entry(name));
+        }
+        return members;
+    }
+
+    /**
+     * Decode the entries that aren't loaded in parallel, then pack them into one packer
+     * note - doesn't touch GL, so it's safe to call from any thread
+     */
+    private Packed pack(String name, Array<Entry> members) {
+        // decode whatever hasn't been decoded yet
+        var toLoad = new Array<Entry>();
+        var paths = new Array<String>(String.class);
+        for (var entry : members) {
+            synchronized (entry) {
+                // note - entries without a path are left for take() to report
+                if (entry.sprite == null && entry.decoded == null && entry.path != null) {
+                    toLoad.add(entry);
+                    paths.add(entry.path);
+                }
+            }
+        }
+        if (paths.size > 0) {
+            var infos = Aseprite.loadAll(paths.toArray());
+            for (int i = 0; i < infos.length; i++) {
+                var entry = toLoad.get(i);
+                synchronized (entry) {
+                    if (entry.decoded == null) {
+                        entry.decoded = infos[i];
+                    } else {
+                        // prefetched by another thread in the meantime
+                        Aseprite.dispose(infos[i]);
+                    }
+                }
+            }
+        }
+
+        // pack everything that isn't loaded into one packer
+        // note - identical frames are shared across the whole group
+        var packed = new Packed();
+        packed.name = name;
+        packed.packer = packers.create();
+        var packedFrames = new Aseprite.PackedFrames();
+        for (var entry : members) {
+            if (entry.sprite != null) continue;
+            packed.entries.add(entry);
+            packed.infos.add(Aseprite.pack(packed.packer, take(entry), packedFrames));
+        }
+        return packed;
+    }
+
+    /**
+     * Create the atlas for whatever was packed and build its sprites against it
+     * note - must be called on the render thread
+     *
+     * @return the members' sprites, in order
+     */
+    private Array<Sprite> commit(Packed packed, Array<Entry> members, PackListener listener) {
+        // note - another job may have loaded everything this one packed, like two prefetched rooms that share a group
+        var built = needsAtlas(packed);
+        if (built) {
+            var atlas = build(packed.packer, packed.name);
+            for (int i = 0; i < packed.entries.size; i++) {
+                // note - skip sprites that were loaded some other way after they were packed
+                var entry = packed.entries.get(i);
+                if (entry.sprite == null) {
+                    create(atlas, entry, packed.infos.get(i));
+                }
+            }
+        }
+
+        // note - a member that was already loaded might have been evicted to make room for the new atlas
+        var sprites = new Array<Sprite>(members.size);
+        for (var entry : members) {
+            sprites.add(get(entry.name));
+        }
+
+        if (built) {
+            if (listener != null) {
+                listener.packed(packed.name, packed.packer, sprites);
+            }
+            packed.packer.dispose();
+        } else {
+            discard(packed);
+        }
+        return sprites;
+    }
+
+    /**
+     * @return true if any of the packed sprites still isn't loaded
+     */
+    private static boolean needsAtlas(Packed packed) {
+        for (var entry : packed.entries) {
+            if (entry.sprite == null) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Let go of packed sprites without building their atlas
+     * note - must be called on the render thread if any pages were uploaded
+     */
+    private static void discard(Packed packed) {
+        // note - an uploaded page's texture owns the page pixmap, so the packer won't dispose that one
+        for (var page : packed.packer.getPages()) {
+            var texture = page.getTexture();
+            if (texture != null) {
+                texture.dispose();
+            }
+        }
+        packed.packer.dispose();
+    }
+
+    private Entry find(Sprite sprite) {
+        if (sprite == null) return null;
+        var entry = entry(sprite.name);
+        // ignore sprites that were built outside the registry
+        return (entry != null && entry.sprite == sprite) ? entry : null;
+    }
+
+    private void decode(Entry entry) {
+        if (entry == null || entry.path == null) return;
+        synchronized (entry) {
+            if (entry.sprite == null && entry.decoded == null) {
+                entry.decoded = Aseprite.load(entry.path);
+            }
+        }
+    }
+
+    /**
+     * Hand over the entry's decoded info, decoding it now if it wasn't prefetched
+     */
+    private Aseprite.SpriteInfo take(Entry entry) {
+        if (entry.path == null) {
+            throw new GdxRuntimeException("Sprite '" + entry.name + "' has no source to load it from");
+        }
+        synchronized (entry) {
+            var info = (entry.decoded != null) ? entry.decoded : Aseprite.load(entry.path);
+            entry.decoded = null;
+            return info;
+        }
+    }
+
+    private Atlas build(PixmapPacker packer, String name) {
+        var atlas = new Atlas();
+        atlas.atlas = packer.generateTextureAtlas(filter, filter, false);
+        track(atlas, name);
+        return atlas;
+    }
+
+    private void track(Atlas atlas, String name) {
+        var bytes = 0L;
+        for (var texture : atlas.atlas.getTextures()) {
+            bytes += TextureBudget.bytes(texture);
+        }
+        budget.add(atlas, "sprites:" + name, bytes);
+    }
+
+    private void create(Atlas atlas, Entry entry, Aseprite.SpriteInfo packed) {
+        entry.sprite = Aseprite.createSprite(packed, atlas.atlas);
+        entry.atlas = atlas;
+        atlas.entries.add(entry);
+    }
+
+}
@@ -0,0 +1,151 @@
+package zendo.games.zenlib.assets;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.utils.Array;
+import lombok.var;
+
+/**
+ * Tracks how much texture memory is resident and evicts the least recently used textures
+ * that nothing holds a reference to once the total goes over budget.
+ *
+ * Whatever owns a texture (a sprite atlas, a room tileset) registers it as a {@link Resident}
+ * and users acquire and release it, a resident with references is never evicted.
+ * note - only use this from the render thread
+ */
+public class TextureBudget {
+
+    private static final String tag = TextureBudget.class.getSimpleName();
+
+    public static abstract class Resident {
+        String name;
+        int refs;
+        long bytes;
+        long lastUsed;
+        boolean resident;
+
+        public int refs() {
+            return refs;
+        }
+
+        public boolean isResident() {
+            return resident;
+        }
+
+        /**
+         * Dispose the textures, users will have to load them again the next time they're needed
+         */
+        protected abstract void evict();
+    }
+
+    public static class Stats {
+        public long residentBytes;
+        public int residentCount;
+        public int loads;
+        public int evictions;
+        public long evictedBytes;
+
+        @Override
+        public String toString() {
+            return String.format("%d resident (%.1f mb), %d loads, %d evictions (%.1f mb)",
+                    residentCount, residentBytes / (1024f * 1024f), loads, evictions, evictedBytes / (1024f * 1024f));
+        }
+    }
+
+    // evict unreferenced textures once this many bytes are resident
+    public long budgetBytes;
+
+    public final Stats stats = new Stats();
+
+    private final Array<Resident> residents = new Array<>();
+    private long clock;
+
+    public TextureBudget(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Start tracking a newly loaded resident, making room for it first if that would go over budget
+     */
+    public void add(Resident resident, String name, long bytes) {
+        trim(budgetBytes - bytes);
+
+        resident.name = name;
+        resident.bytes = bytes;
+        resident.resident = true;
+        touch(resident);
+        residents.add(resident);
+
+        stats.residentBytes += bytes;
+        stats.residentCount++;
+        stats.loads++;
+
+        if (stats.residentBytes > budgetBytes) {
+            Gdx.app.debug(tag, "Over budget after loading " + name + ": " + stats);
+        }
+    }
+
+    /**
+     * Stop tracking a resident without counting it as an eviction, for when its owner is disposed
+     */
+    public void remove(Resident resident) {
+        if (!resident.resident) return;
+        residents.removeValue(resident, true);
+        resident.resident = false;
+        stats.residentBytes -= resident.bytes;
+        stats.residentCount--;
+    }
+
+    public void acquire(Resident resident) {
+        resident.refs++;
+        touch(resident);
+    }
+
+    public void release(Resident resident) {
+        if (resident.refs <= 0) {
+            Gdx.app.error(tag, "Released " + resident.name + " more times than it was acquired");
+            return;
+        }
+        resident.refs--;
+        if (resident.refs == 0 && stats.residentBytes > budgetBytes) {
+            trim(budgetBytes);
+        }
+    }
+
+    /**
+     * Mark a resident as just used, so it's the last to be evicted
+     */
+    public void touch(Resident resident) {
+        resident.lastUsed = ++clock;
+    }
+
+    /**
+     * Evict unreferenced residents, least recently used first, until no more than the specified bytes are resident
+     */
+    public void trim(long targetBytes) {
+        while (stats.residentBytes > targetBytes) {
+            Resident oldest = null;
+            for (var resident : residents) {
+                if (resident.refs == 0 && (oldest == null || resident.lastUsed < oldest.lastUsed)) {
+                    oldest = resident;
+                }
+            }
+            // everything that's left is in use
+            if (oldest == null) break;
+
+            remove(oldest);
+            stats.evictions++;
+            stats.evictedBytes += oldest.bytes;
+            Gdx.app.debug(tag, "Evicting " + oldest.name);
+            oldest.evict();
+        }
+    }
+
+    /**
+     * @return an estimate of the memory used by a texture, assuming 32 bits per pixel
+     */
+    public static long bytes(Texture texture) {
+        return 4L * texture.getWidth() * texture.getHeight();
+    }
+
+}
@@ -0,0 +1,448 @@
+package zendo.games.zenlib.assets;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import lombok.var;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Streaming reader for tiled .tmx files that produces {@link Room} data directly.
+ *
+ * This is a small pull parser over the raw file bytes rather than a DOM or a TiledMap:
+ * tile layer data is decoded from the text in place into gid arrays, and only the handful
+ * of attribute values that end up in the room are turned into strings.
+ * note - javax.xml.stream isn't available on android, which is why this doesn't use it
+ */
+public class TmxReader {
+
+    // tiled stores flip flags in the high bits of each gid
+    static final int gid_mask = 0x1FFFFFFF;
+
+    enum Event { start, end, text, eof }
+
+    static final int max_attributes = 16;
+
+    private final FileHandle file;
+    private final byte[] data;
+    private int position;
+
+    // current element name, attributes, and text as ranges into data
+    private int nameStart, nameEnd;
+    private int attributeCount;
+    private final int[] attributeNameStart  = new int[max_attributes];
+    private final int[] attributeNameEnd    = new int[max_attributes];
+    private final int[] attributeValueStart = new int[max_attributes];
+    private final int[] attributeValueEnd   = new int[max_attributes];
+    private int textStart, textEnd;
+    private boolean pendingEnd;
+
+    private TmxReader(FileHandle file) {
+        this.file = file;
+        this.data = file.readBytes();
+        this.position = 0;
+    }
+
+    public static Room read(FileHandle file, int roomX, int roomY) {
+        return new TmxReader(file).readRoom(roomX, roomY);
+    }
+
+    // ------------------------------------------------------------------------
+    // room building
+    // ------------------------------------------------------------------------
+
+    private Room readRoom(int roomX, int roomY) {
+        var room = new Room();
+        room.roomX = roomX;
+        room.roomY = roomY;
+
+        Room.Tileset tileset = null;
+        Room.Layer layer = null;
+        Room.Spawner spawner = null;
+        String encoding = null;
+        String compression = null;
+        var xmlTiles = 0;
+
+        for (var event = next(); event != Event.eof; event = next()) {
+            if (event == Event.start) {
+                if (is("map")) {
+                    room.columns    = intAttribute("width", 0);
+                    room.rows       = intAttribute("height", 0);
+                    room.tileWidth  = intAttribute("tilewidth", 0);
+                    room.tileHeight = intAttribute("tileheight", 0);
+                    if (intAttribute("infinite", 0) != 0) {
+                        throw new GdxRuntimeException("Infinite tmx maps are not supported: " + file.path());
+                    }
+                }
+                else if (is("tileset")) {
+                    if (attribute("source") != null) {
+                        throw new GdxRuntimeException("External tilesets are not supported: " + file.path());
+                    }
+                    tileset = new Room.Tileset();
+                    tileset.firstGid   = intAttribute("firstgid", 1);
+                    tileset.tileCount  = intAttribute("tilecount", 0);
+                    tileset.columns    = intAttribute("columns", 0);
+                    tileset.tileWidth  = intAttribute("tilewidth", 0);
+                    tileset.tileHeight = intAttribute("tileheight", 0);
+                    tileset.spacing    = intAttribute("spacing", 0);
+                    tileset.margin     = intAttribute("margin", 0);
+                    room.tilesets.add(tileset);
+                }
+                else if (is("image") && tileset != null) {
+                    tileset.image = file.parent().child(attribute("source")).path();
+                }
+                else if (is("layer")) {
+                    layer = new Room.Layer();
+                    layer.name = attribute("name");
+                    layer.gids = new int[room.columns * room.rows];
+                    room.layers.add(layer);
+                }
+                else if (is("data") && layer != null) {
+                    encoding = attribute("encoding");
+                    compression = attribute("compression");
+                    xmlTiles = 0;
+                }
+                else if (is("tile") && layer != null && encoding == null) {
+                    // uncommon unencoded layer data, one element per cell
+                    setGid(layer, room, xmlTiles++, unsignedAttribute("gid"));
+                }
+                else if (is("object")) {
+                    spawner = null;
+                    // note - tiled 1.9 and later write an object's type as its class
+                    if (attributeEquals("type", "spawner") || attributeEquals("class", "spawner")) {
+                        spawner = new Room.Spawner();
+                        spawner.x = (int) floatAttribute("x");
+                        spawner.y = room.rows * room.tileHeight - (int) floatAttribute("y");
+                        room.spawners.add(spawner);
+                    }
+                }
+                else if (is("property") && spawner != null) {
+                    if (attributeEquals("name", "target")) {
+                        spawner.target = attribute("value");
+                    }
+                }
+            }
+            else if (event == Event.text) {
+                if (layer != null && encoding != null) {
+                    if ("csv".equals(encoding)) {
+                        decodeCsv(layer, room);
+                    } else if ("base64".equals(encoding)) {
+                        decodeBase64(layer, room, compression);
+                    } else {
+                        throw new GdxRuntimeException("Unsupported tmx layer encoding '" + encoding + "': " + file.path());
+                    }
+                    encoding = null;
+                }
+            }
+            else if (event == Event.end) {
+                if      (is("tileset")) tileset = null;
+                else if (is("layer"))   layer = null;
+                else if (is("data"))    encoding = null;
+                else if (is("object"))  spawner = null;
+            }
+        }
+
+        return room;
+    }
+
+    /**
+     * Set the gid for the cell at the specified index in file order, flipping rows so that row 0 is the bottom of the room
+     */
+    private static void setGid(Room.Layer layer, Room room, int index, long gid) {
+        if (index >= layer.gids.length) return;
+        var x = index % room.columns;
+        var y = room.rows - 1 - (index / room.columns);
+        layer.gids[x + y * room.columns] = (int) (gid & gid_mask);
+    }
+
+    private void decodeCsv(Room.Layer layer, Room room) {
+        var index = 0;
+        var value = 0L;
+        var digits = false;
+        for (int i = textStart; i < textEnd; i++) {
+            var c = data[i];
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits = true;
+            } else if (c == ',') {
+                setGid(layer, room, index++, value);
+                value = 0;
+                digits = false;
+            }
+        }
+        if (digits) {
+            setGid(layer, room, index, value);
+        }
+    }
+
+    private void decodeBase64(Room.Layer layer, Room room, String compression) {
+        var bytes = base64(textStart, textEnd);
+        var length = room.columns * room.rows * 4;
+
+        if ("zlib".equals(compression) || "gzip".equals(compression)) {
+            bytes = inflate(bytes, length, "gzip".equals(compression));
+        } else if (compression != null) {
+            throw new GdxRuntimeException("Unsupported tmx layer compression '" + compression + "': " + file.path());
+        }
+
+        var count = Math.min(bytes.length, length) / 4;
+        for (int i = 0; i < count; i++) {
+            var offset = i * 4;
+            long gid = (bytes[offset] & 0xFF)
+                    | (bytes[offset + 1] & 0xFF) << 8
+                    | (bytes[offset + 2] & 0xFF) << 16
+                    | (long) (bytes[offset + 3] & 0xFF) << 24;
+            setGid(layer, room, i, gid);
+        }
+    }
+
+    /**
+     * Decode base64 text straight from the file bytes, skipping whitespace
+     */
+    private byte[] base64(int start, int end) {
+        var output = new byte[((end - start) / 4 + 1) * 3];
+        var count = 0;
+        var bits = 0;
+        var bitCount = 0;
+        for (int i = start; i < end; i++) {
+            var c = data[i];
+            int value;
+            if      (c >= 'A' && c <= 'Z') value = c - 'A';
+            else if (c >= 'a' && c <= 'z') value = c - 'a' + 26;
+            else if (c >= '0' && c <= '9') value = c - '0' + 52;
+            else if (c == '+') value = 62;
+            else if (c == '/') value = 63;
+            else if (c == '=') break;
+            else continue;
+
+            bits = (bits << 6) | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                output[count++] = (byte) (bits >> bitCount);
+            }
+        }
+
+        if (count == output.length) {
+            return output;
+        }
+        var result = new byte[count];
+        System.arraycopy(output, 0, result, 0, count);
+        return result;
+    }
+
+    private byte[] inflate(byte[] input, int length, boolean gzip) {
+        // note - a gzip stream is a deflate stream wrapped in a 10 byte header and an 8 byte trailer
+        var inflater = new Inflater(gzip);
+        try {
+            if (gzip) {
+                inflater.setInput(input, 10, input.length - 18);
+            } else {
+                inflater.setInput(input);
+            }
+            var output = new byte[length];
+            var count = 0;
+            while (count < length && !inflater.finished()) {
+                var inflated = inflater.inflate(output, count, length - count);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                count += inflated;
+            }
+            if (count != length) {
+                throw new GdxRuntimeException("Truncated tmx layer data: " + file.path());
+            }
+            return output;
+        } catch (DataFormatException e) {
+            throw new GdxRuntimeException("Invalid compressed tmx layer data: " + file.path(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // pull parser
+    // ------------------------------------------------------------------------
+
+    private Event next() {
+        if (pendingEnd) {
+            // self closing element, name is still set from its start
+            pendingEnd = false;
+            return Event.end;
+        }
+
+        while (position < data.length) {
+            if (data[position] != '<') {
+                // text content, only reported if it isn't all whitespace
+                var start = position;
+                while (position < data.length && data[position] != '<') position++;
+                for (int i = start; i < position; i++) {
+                    if (data[i] > ' ') {
+                        textStart = start;
+                        textEnd = position;
+                        return Event.text;
+                    }
+                }
+                continue;
+            }
+
+            if (startsWith("<?")) {
+                skipPast("?>");
+            } else if (startsWith("<!--")) {
+                skipPast("-->");
+            } else if (startsWith("<!")) {
+                skipPast(">");
+            } else if (startsWith("</")) {
+                position += 2;
+                readName();
+                skipPast(">");
+                return Event.end;
+            } else {
+                position++;
+                readName();
+                readAttributes();
+                return Event.start;
+            }
+        }
+        return Event.eof;
+    }
+
+    private void readName() {
+        nameStart = position;
+        while (position < data.length && !isSpace(data[position]) && data[position] != '>' && data[position] != '/') {
+            position++;
+        }
+        nameEnd = position;
+    }
+
+    private void readAttributes() {
+        attributeCount = 0;
+        while (position < data.length) {
+            var c = data[position];
+            if (isSpace(c)) {
+                position++;
+            } else if (c == '/') {
+                pendingEnd = true;
+                position++;
+            } else if (c == '>') {
+                position++;
+                return;
+            } else {
+                var index = attributeCount;
+                if (index < max_attributes) {
+                    attributeNameStart[index] = position;
+                }
+                while (position < data.length && data[position] != '=' && !isSpace(data[position])) position++;
+                if (index < max_attributes) {
+                    attributeNameEnd[index] = position;
+                }
+                while (position < data.length && data[position] != '"' && data[position] != '\'') position++;
+                if (position >= data.length) throw truncated();
+                var quote = data[position++];
+                var valueStart = position;
+                while (position < data.length && data[position] != quote) position++;
+                if (position >= data.length) throw truncated();
+                if (index < max_attributes) {
+                    attributeValueStart[index] = valueStart;
+                    attributeValueEnd[index] = position;
+                    attributeCount++;
+                }
+                position++;
+            }
+        }
+        throw truncated();
+    }
+
+    private GdxRuntimeException truncated() {
+        return new GdxRuntimeException("Truncated tmx element '" + new String(data, nameStart, nameEnd - nameStart, StandardCharsets.UTF_8)
+                + "' at byte " + nameStart + ": " + file.path());
+    }
+
+    private boolean is(String name) {
+        return rangeEquals(nameStart, nameEnd, name);
+    }
+
+    private int findAttribute(String name) {
+        for (int i = 0; i < attributeCount; i++) {
+            if (rangeEquals(attributeNameStart[i], attributeNameEnd[i], name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean attributeEquals(String name, String value) {
+        var index = findAttribute(name);
+        return index != -1 && rangeEquals(attributeValueStart[index], attributeValueEnd[index], value);
+    }
+
+    private String attribute(String name) {
+        var index = findAttribute(name);
+        if (index == -1) return null;
+        return unescape(new String(data, attributeValueStart[index], attributeValueEnd[index] - attributeValueStart[index], StandardCharsets.UTF_8));
+    }
+
+    private int intAttribute(String name, int defaultValue) {
+        var index = findAttribute(name);
+        if (index == -1) return defaultValue;
+
+        var value = 0;
+        var sign = 1;
+        for (int i = attributeValueStart[index]; i < attributeValueEnd[index]; i++) {
+            var c = data[i];
+            if (c == '-') sign = -1;
+            else if (c >= '0' && c <= '9') value = value * 10 + (c - '0');
+            else break;
+        }
+        return sign * value;
+    }
+
+    private long unsignedAttribute(String name) {
+        var index = findAttribute(name);
+        if (index == -1) return 0;
+
+        var value = 0L;
+        for (int i = attributeValueStart[index]; i < attributeValueEnd[index]; i++) {
+            var c = data[i];
+            if (c < '0' || c > '9') break;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private float floatAttribute(String name) {
+        var value = attribute(name);
+        return (value != null) ? Float.parseFloat(value) : 0;
+    }
+
+    private boolean rangeEquals(int start, int end, String value) {
+        if (end - start != value.length()) return false;
+        for (int i = 0; i < value.length(); i++) {
+            if (data[start + i] != value.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private boolean startsWith(String value) {
+        return position + value.length() <= data.length && rangeEquals(position, position + value.length(), value);
+    }
+
+    private void skipPast(String value) {
+        while (position < data.length && !startsWith(value)) position++;
+        position = Math.min(position + value.length(), data.length);
+    }
+
+    private static boolean isSpace(byte c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('&') == -1) return value;
+        return value.replace("&lt;", "<")
+                    .replace("&gt;", ">")
+                    .replace("&quot;", "\"")
+                    .replace("&apos;", "'")
+                    .replace("&amp;", "&");
+    }
+
+}
@@ -23,8 +23,12 @@ public class Animator extends Component {
     }
 
     public Animator(String spriteName) {
+        this(Content.findSprite(spriteName));
+    }
+
+    public Animator(Sprite sprite) {
         reset();
-        sprite = Content.findSprite(spriteName);
+        this.sprite = sprite;
     }
 
     @Override
@@ -50,13 +54,34 @@ public class Animator extends Component {
             this.scale.set(animator.scale);
             this.rotation       = animator.rotation;
             this.speed          = animator.speed;
-            this.sprite         = animator.sprite;
+            this.sprite         = resolve(animator.sprite);
             this.animationIndex = animator.animationIndex;
             this.frameIndex     = animator.frameIndex;
             this.frameCounter   = animator.frameCounter;
+
+            // hold a reference to the sprite for as long as this animator is alive
+            // note - copyFrom is how World.add creates live components, templates don't hold references
+            Content.sprites.acquire(this.sprite);
         }
     }
 
+    /**
+     * Templates don't hold a reference to their sprite, so its atlas may have been evicted since the template was made,
+     * look it up again by name to get the current one, loading it again if need be
+     * note - sprites that weren't built by the registry are used as is
+     */
+    private static Sprite resolve(Sprite sprite) {
+        if (sprite == null) return null;
+        var current = Content.sprites.get(sprite.name);
+        return (current != null) ? current : sprite;
+    }
+
+    @Override
+    public void destroyed() {
+        Content.sprites.release(sprite);
+        sprite = null;
+    }
+
     public Sprite sprite() {
         return sprite;
     }
@@ -132,11 +157,12 @@ public class Animator extends Component {
         var anim = sprite.animations.get(animationIndex);
         var frame = anim.frames.get(frameIndex);
 
+        // note - frame images are trimmed, so shift them by their offset and keep the origin where it was
         batch.draw(frame.image,
-                entity().position.x - sprite.origin.x,
-                entity().position.y - sprite.origin.y,
-                sprite.origin.x,
-                sprite.origin.y,
+                entity().position.x - sprite.origin.x + frame.offsetX,
+                entity().position.y - sprite.origin.y + frame.offsetY,
+                sprite.origin.x - frame.offsetX,
+                sprite.origin.y - frame.offsetY,
                 frame.image.getRegionWidth(),
                 frame.image.getRegionHeight(),
                 scale.x, scale.y,
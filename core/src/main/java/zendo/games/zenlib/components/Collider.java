@@ -2,13 +2,18 @@ package zendo.games.zenlib.components;
 
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
 import lombok.var;
 import zendo.games.zenlib.ecs.Component;
 import zendo.games.zenlib.utils.Calc;
 import zendo.games.zenlib.utils.Point;
 import zendo.games.zenlib.utils.RectI;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 
 public class Collider extends Component {
 
@@ -18,7 +23,349 @@ public class Collider extends Component {
         public int columns;
         public int rows;
         public int tileSize;
+
+        // dense storage, one flag per cell, null for chunked grids
         public boolean[] cells;
+
+        // merged rectangles are maintained per block of cells
+        // so changing a cell only requires re-merging the block it's in,
+        // rects that line up across block edges are joined afterwards
+        static final int block_size = 16;
+        static final int cells_per_block = block_size * block_size;
+
+        static class Block {
+            boolean dirty = true;
+            final List<RectI> rects = new ArrayList<>();
+        }
+
+        /**
+         * A block of a chunked grid, only allocated once it has a solid cell in it.
+         * Fully solid chunks are stored as a flag, mixed chunks as a bitset of cells.
+         */
+        static class Chunk extends Block {
+            boolean solid;
+            long[] bits;
+            int count;
+
+            boolean get(int localX, int localY) {
+                if (solid) return true;
+                int index = localX + localY * block_size;
+                return (bits[index >>> 6] & (1L << index)) != 0;
+            }
+        }
+
+        private Block[] blocks;
+        private int blockColumns;
+        private int blockRows;
+        private boolean rectsDirty = true;
+        private final List<RectI> rects = new ArrayList<>();
+        private boolean[] used;
+
+        // chunked storage, keyed by block index, null for dense grids
+        private IntMap<Chunk> chunks;
+
+        void init(int tileSize, int columns, int rows) {
+            this.tileSize = tileSize;
+            this.columns = columns;
+            this.rows = rows;
+            this.cells = new boolean[columns * rows];
+            this.chunks = null;
+            this.blockColumns = (columns + block_size - 1) / block_size;
+            this.blockRows = (rows + block_size - 1) / block_size;
+            this.blocks = new Block[blockColumns * blockRows];
+            for (int i = 0; i < blocks.length; i++) {
+                blocks[i] = new Block();
+            }
+            this.used = new boolean[cells_per_block];
+            this.rectsDirty = true;
+        }
+
+        void initChunked(int tileSize, int columns, int rows) {
+            this.tileSize = tileSize;
+            this.columns = columns;
+            this.rows = rows;
+            this.cells = null;
+            this.blocks = null;
+            this.blockColumns = (columns + block_size - 1) / block_size;
+            this.blockRows = (rows + block_size - 1) / block_size;
+            assert ((long) blockColumns * blockRows <= Integer.MAX_VALUE) : "Chunked grid is too large";
+            this.chunks = new IntMap<>();
+            this.used = new boolean[cells_per_block];
+            this.rectsDirty = true;
+        }
+
+        public boolean chunked() {
+            return chunks != null;
+        }
+
+        /**
+         * @return the number of allocated chunks, or 0 for dense grids
+         */
+        public int chunkCount() {
+            return (chunks == null) ? 0 : chunks.size;
+        }
+
+        public boolean get(int x, int y) {
+            if (chunks == null) {
+                return cells[x + y * columns];
+            }
+            var chunk = chunks.get((x / block_size) + (y / block_size) * blockColumns);
+            return chunk != null && chunk.get(x % block_size, y % block_size);
+        }
+
+        void set(int x, int y, boolean value) {
+            if (chunks == null) {
+                cells[x + y * columns] = value;
+                markDirty(x, y);
+                return;
+            }
+
+            var key = (x / block_size) + (y / block_size) * blockColumns;
+            var chunk = chunks.get(key);
+            if (chunk == null) {
+                if (!value) return;
+                chunk = new Chunk();
+                chunk.bits = new long[cells_per_block / 64];
+                chunks.put(key, chunk);
+            }
+
+            var localX = x % block_size;
+            var localY = y % block_size;
+            if (chunk.get(localX, localY) == value) return;
+
+            // expand a solid chunk back into a bitset before clearing a cell in it
+            if (chunk.solid) {
+                chunk.solid = false;
+                chunk.bits = new long[cells_per_block / 64];
+                Arrays.fill(chunk.bits, -1L);
+            }
+
+            var index = localX + localY * block_size;
+            if (value) {
+                chunk.bits[index >>> 6] |= (1L << index);
+                chunk.count++;
+            } else {
+                chunk.bits[index >>> 6] &= ~(1L << index);
+                chunk.count--;
+            }
+
+            // collapse chunks that are entirely solid or entirely empty
+            // note - edge chunks that are clipped by the grid bounds never count as fully solid
+            if (chunk.count == cells_per_block) {
+                chunk.solid = true;
+                chunk.bits = null;
+            }
+            else if (chunk.count == 0) {
+                chunks.remove(key);
+            }
+
+            chunk.dirty = true;
+            rectsDirty = true;
+        }
+
+        /**
+         * @return whether any cell in the range [left, right) x [bottom, top) is solid,
+         *         only the chunks the range touches are visited for chunked grids
+         */
+        boolean any(int left, int bottom, int right, int top) {
+            if (left >= right || bottom >= top) return false;
+
+            if (chunks == null) {
+                for (int iy = bottom; iy < top; iy++) {
+                    for (int ix = left; ix < right; ix++) {
+                        if (cells[ix + iy * columns]) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            }
+
+            for (int cy = bottom / block_size; cy <= (top - 1) / block_size; cy++) {
+                for (int cx = left / block_size; cx <= (right - 1) / block_size; cx++) {
+                    var chunk = chunks.get(cx + cy * blockColumns);
+                    if (chunk == null) continue;
+                    if (chunk.solid) return true;
+
+                    var startX = Math.max(left, cx * block_size) - cx * block_size;
+                    var startY = Math.max(bottom, cy * block_size) - cy * block_size;
+                    var endX = Math.min(right, (cx + 1) * block_size) - cx * block_size;
+                    var endY = Math.min(top, (cy + 1) * block_size) - cy * block_size;
+                    for (int iy = startY; iy < endY; iy++) {
+                        for (int ix = startX; ix < endX; ix++) {
+                            if (chunk.get(ix, iy)) {
+                                return true;
+                            }
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        void markDirty(int x, int y) {
+            blocks[(x / block_size) + (y / block_size) * blockColumns].dirty = true;
+            rectsDirty = true;
+        }
+
+        /**
+         * Get the solid cells of this grid merged into as few rectangles as practical,
+         * in cell units relative to the grid origin. Blocks that changed since the last call are re-merged,
+         * then rects that line up across block edges are joined.
+         *
+         * @return the merged rectangles, valid until the grid is next changed
+         */
+        public List<RectI> rects() {
+            if (rectsDirty) {
+                rects.clear();
+                if (chunks == null) {
+                    for (int i = 0; i < blocks.length; i++) {
+                        var block = blocks[i];
+                        if (block.dirty) {
+                            merge(block, (i % blockColumns) * block_size, (i / blockColumns) * block_size);
+                            block.dirty = false;
+                        }
+                        addCopies(block.rects);
+                    }
+                } else {
+                    for (var entry : chunks) {
+                        var chunk = entry.value;
+                        if (chunk.dirty) {
+                            merge(chunk, (entry.key % blockColumns) * block_size, (entry.key / blockColumns) * block_size);
+                            chunk.dirty = false;
+                        }
+                        addCopies(chunk.rects);
+                    }
+                }
+                join(by_row, true);
+                join(by_column, false);
+                rectsDirty = false;
+            }
+            return rects;
+        }
+
+        private static final Comparator<RectI> by_row    = Comparator.<RectI>comparingInt(r -> r.y).thenComparingInt(r -> r.h).thenComparingInt(r -> r.x);
+        private static final Comparator<RectI> by_column = Comparator.<RectI>comparingInt(r -> r.x).thenComparingInt(r -> r.w).thenComparingInt(r -> r.y);
+
+        private void addCopies(List<RectI> blockRects) {
+            // note - copies, since joining grows rects in place and the block's rects are kept until it changes
+            for (int i = 0; i < blockRects.size(); i++) {
+                rects.add(RectI.at(blockRects.get(i)));
+            }
+        }
+
+        /**
+         * Join rects that continue each other across a block edge,
+         * horizontally for runs with the same row span or vertically for runs with the same column span
+         */
+        private void join(Comparator<RectI> order, boolean horizontal) {
+            rects.sort(order);
+            int count = 0;
+            for (int i = 0; i < rects.size(); i++) {
+                var rect = rects.get(i);
+                if (count > 0) {
+                    var last = rects.get(count - 1);
+                    if (horizontal && last.y == rect.y && last.h == rect.h && last.x + last.w == rect.x) {
+                        last.w += rect.w;
+                        continue;
+                    }
+                    if (!horizontal && last.x == rect.x && last.w == rect.w && last.y + last.h == rect.y) {
+                        last.h += rect.h;
+                        continue;
+                    }
+                }
+                rects.set(count++, rect);
+            }
+            for (int i = rects.size() - 1; i >= count; i--) {
+                rects.remove(i);
+            }
+        }
+
+        private void merge(Block block, int blockX, int blockY) {
+            block.rects.clear();
+
+            var right = Math.min(blockX + block_size, columns);
+            var top = Math.min(blockY + block_size, rows);
+
+            // a solid chunk is a single rectangle
+            if (block instanceof Chunk && ((Chunk) block).solid) {
+                block.rects.add(RectI.at(blockX, blockY, right - blockX, top - blockY));
+                return;
+            }
+
+            Arrays.fill(used, false);
+
+            // greedy: grow a run of solid cells to the right,
+            // then grow it upwards for as long as the whole run stays solid
+            for (int y = blockY; y < top; y++) {
+                for (int x = blockX; x < right; x++) {
+                    if (!get(x, y) || used[(x - blockX) + (y - blockY) * block_size]) continue;
+
+                    int w = 1;
+                    while (x + w < right
+                        && get(x + w, y)
+                        && !used[(x + w - blockX) + (y - blockY) * block_size]) {
+                        w++;
+                    }
+
+                    int h = 1;
+                    grow:
+                    while (y + h < top) {
+                        for (int ix = x; ix < x + w; ix++) {
+                            if (!get(ix, y + h) || used[(ix - blockX) + (y + h - blockY) * block_size]) {
+                                break grow;
+                            }
+                        }
+                        h++;
+                    }
+
+                    for (int iy = y; iy < y + h; iy++) {
+                        for (int ix = x; ix < x + w; ix++) {
+                            used[(ix - blockX) + (iy - blockY) * block_size] = true;
+                        }
+                    }
+
+                    block.rects.add(RectI.at(x, y, w, h));
+                }
+            }
+        }
+    }
+
+    public interface OnContact {
+        void contact(Collider self, Collider other);
+    }
+
+    /**
+     * Contact callbacks for colliders whose mask matches, delivered by the World's {@link Collisions} pass
+     */
+    public static class Subscription {
+        public int mask;
+        public OnContact onEnter;
+        public OnContact onStay;
+        public OnContact onExit;
+
+        boolean matches(Collider other) {
+            return (other.mask & mask) == mask;
+        }
+    }
+
+    /**
+     * Result of a ray or segment query
+     */
+    public static class RayHit {
+        public Collider collider;
+        public float fraction; // how far along the segment the hit is, in [0, 1]
+        public float x;
+        public float y;
+        public int cellX; // grid cell that was hit, or -1 for rect colliders
+        public int cellY;
+
+        public void clear() {
+            collider = null;
+            fraction = 1;
+            x = y = 0;
+            cellX = cellY = -1;
+        }
     }
 
     public int mask = 0;
@@ -27,6 +374,23 @@ public class Collider extends Component {
     private RectI rect;
     private Grid grid;
 
+    // contact bookkeeping, maintained by Collisions
+    List<Subscription> subscriptions = null;
+    List<Collider> contacts = new ArrayList<>();
+    List<Collider> previousContacts = new ArrayList<>();
+    boolean destroyed = false;
+    boolean inSweep = false;
+    int sweepTick = 0;
+    long contactMark = 0;
+    long previousMark = 0;
+    boolean moved = false;
+
+    // cached world space bounds, refreshed only when the entity moves or the shape changes
+    int minX, minY, maxX, maxY;
+    private boolean boundsDirty = true;
+    private int boundsPositionX;
+    private int boundsPositionY;
+
     public Collider() {
         visible = true;
         active = true;
@@ -39,11 +403,26 @@ public class Collider extends Component {
             var collider = (Collider) other;
             this.mask = collider.mask;
             this.shape = collider.shape;
-            this.rect = collider.rect;
+            // note - copied by value, editing the template's rect must not move copies without dirtying their bounds
+            this.rect = (collider.rect != null) ? RectI.at(collider.rect) : null;
             this.grid = collider.grid;
+            // note - the subscriptions themselves are shared with the template, but not the list of them
+            this.subscriptions = (collider.subscriptions != null) ? new ArrayList<>(collider.subscriptions) : null;
+            this.destroyed = false;
+            this.boundsDirty = true;
+            this.contacts.clear();
+            this.previousContacts.clear();
         }
     }
 
+    @Override
+    public void destroyed() {
+        destroyed = true;
+        subscriptions = null;
+        contacts.clear();
+        previousContacts.clear();
+    }
+
     public static Collider makeRect(RectI rect) {
         Collider collider = new Collider();
         collider.shape = Shape.rect;
@@ -55,11 +434,19 @@ public class Collider extends Component {
         Collider collider = new Collider();
         collider.shape = Shape.grid;
         collider.grid = new Grid();
-        collider.grid.tileSize = tileSize;
-        collider.grid.columns = columns;
-        collider.grid.rows = rows;
-        collider.grid.cells = new boolean[columns * rows];
-        Arrays.fill(collider.grid.cells, false);
+        collider.grid.init(tileSize, columns, rows);
+        return collider;
+    }
+
+    /**
+     * Make a grid collider whose cells are stored in chunks that are allocated on demand,
+     * for very large grids that are mostly empty or made of large solid areas
+     */
+    public static Collider makeChunkedGrid(int tileSize, int columns, int rows) {
+        Collider collider = new Collider();
+        collider.shape = Shape.grid;
+        collider.grid = new Grid();
+        collider.grid.initChunked(tileSize, columns, rows);
         return collider;
     }
 
@@ -67,6 +454,9 @@ public class Collider extends Component {
         return shape;
     }
 
+    /**
+     * note - the returned rect is the collider's own, change it through setRect() so the cached bounds and the collision pass see it
+     */
     public RectI getRect() {
         assert (shape == Shape.rect) : "Collider is not a Rectangle";
         return rect;
@@ -75,11 +465,30 @@ public class Collider extends Component {
     public void setRect(RectI rect) {
         assert (shape == Shape.rect) : "Collider is not a Rectangle";
         this.rect = rect;
+        this.boundsDirty = true;
+        moved();
     }
 
     public void setRect(int x, int y, int w, int h) {
         assert (shape == Shape.rect) : "Collider is not a Rectangle";
         this.rect.set(x, y, w, h);
+        this.boundsDirty = true;
+        moved();
+    }
+
+    /**
+     * Let the World's collision pass know this collider moved or changed shape since the start of the tick,
+     * so overlap queries don't look for it where it used to be. Movers and the rect setters call this,
+     * queries also notice entities whose position was written directly, so calling it is optional.
+     */
+    public void moved() {
+        var world = world();
+        if (world == null || moved) return;
+
+        var collisions = world.system(Collisions.class);
+        if (collisions != null) {
+            collisions.moved(this);
+        }
     }
 
     public Grid getGrid() {
@@ -90,18 +499,18 @@ public class Collider extends Component {
     public boolean getCell(int x, int y) {
         assert (shape == Shape.grid) : "Collider is not a Grid";
         assert (x >= 0 && y >= 0 && x < grid.columns && y < grid.rows) : "Cell is out of bounds";
-        return grid.cells[x + y * grid.columns];
+        return grid.get(x, y);
     }
 
     public void setCell(int x, int y, boolean value) {
         assert (shape == Shape.grid) : "Collider is not a Grid";
         assert (x >= 0 && y >= 0 && x < grid.columns && y < grid.rows) : "Cell is out of bounds";
-        grid.cells[x + y * grid.columns] = value;
+        grid.set(x, y, value);
     }
 
     public void setCells(int x, int y, int w, int h, boolean value) {
         assert (shape == Shape.grid) : "Collider is not a Grid";
-        assert (x >= 0 && y >= 0 && x < grid.columns && x + w < grid.columns && y < grid.rows && y + h < grid.rows) : "Cell is out of bounds";
+        assert (x >= 0 && y >= 0 && x < grid.columns && x + w <= grid.columns && y < grid.rows && y + h <= grid.rows) : "Cell is out of bounds";
         for (int ix = x; ix < x + w; ix++) {
             for (int iy = y; iy < y + h; iy++) {
                 setCell(ix, iy, value);
@@ -109,16 +518,88 @@ public class Collider extends Component {
         }
     }
 
+    /**
+     * Listen for contacts with colliders that match the specified mask,
+     * callbacks are set on the returned Subscription
+     */
+    public Subscription subscribe(int mask) {
+        var subscription = new Subscription();
+        subscription.mask = mask;
+        if (subscriptions == null) {
+            subscriptions = new ArrayList<>();
+        }
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    public void unsubscribe(Subscription subscription) {
+        if (subscriptions != null) {
+            subscriptions.remove(subscription);
+        }
+    }
+
+    /**
+     * Whether any subscription on this collider cares about contacts with the other collider
+     */
+    boolean listensTo(Collider other) {
+        if (subscriptions == null) return false;
+        for (int i = 0; i < subscriptions.size(); i++) {
+            if (subscriptions.get(i).matches(other)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Refresh the cached world space bounds if the entity has moved or the shape has changed
+     */
+    void updateBounds() {
+        var position = entity().position;
+        if (!boundsDirty && position.x == boundsPositionX && position.y == boundsPositionY) {
+            return;
+        }
+        boundsDirty = false;
+        boundsPositionX = position.x;
+        boundsPositionY = position.y;
+
+        if (shape == Shape.rect) {
+            minX = rect.x + position.x;
+            minY = rect.y + position.y;
+            maxX = minX + rect.w;
+            maxY = minY + rect.h;
+        }
+        else if (shape == Shape.grid) {
+            minX = position.x;
+            minY = position.y;
+            maxX = minX + grid.columns * grid.tileSize;
+            maxY = minY + grid.rows * grid.tileSize;
+        }
+        else {
+            minX = maxX = position.x;
+            minY = maxY = position.y;
+        }
+    }
+
     public boolean check(int mask) {
-        return check(mask, Point.zero());
+        return check(mask, 0, 0);
     }
 
     public boolean check(int mask, Point offset) {
+        return check(mask, offset.x, offset.y);
+    }
+
+    public boolean check(int mask, int offsetX, int offsetY) {
+        var collisions = world().system(Collisions.class);
+        if (collisions != null) {
+            return collisions.collide(this, mask, offsetX, offsetY, null) > 0;
+        }
+
         var other = world().first(Collider.class);
         while (other != null) {
             if (other != this
              && (other.mask & mask) == mask
-             && overlaps(other, offset)) {
+             && overlaps(other, offsetX, offsetY)) {
                 return true;
             }
 
@@ -128,22 +609,71 @@ public class Collider extends Component {
         return false;
     }
 
+    /**
+     * Find every other collider matching the mask that this collider overlaps when offset by (offsetX, offsetY)
+     *
+     * @param buffer cleared and then filled with the colliders that were found
+     *
+     * @return the number of colliders found
+     */
+    public int collideAll(int mask, int offsetX, int offsetY, Array<Collider> buffer) {
+        var collisions = world().system(Collisions.class);
+        if (collisions != null) {
+            return collisions.collide(this, mask, offsetX, offsetY, buffer);
+        }
+
+        buffer.clear();
+        var other = world().first(Collider.class);
+        while (other != null) {
+            if (other != this
+             && (other.mask & mask) == mask
+             && overlaps(other, offsetX, offsetY)) {
+                buffer.add(other);
+            }
+
+            other = (Collider) other.next();
+        }
+        return buffer.size;
+    }
+
+    /**
+     * @return whether this collider overlaps the specified world space rectangle
+     */
+    public boolean overlaps(RectI rect) {
+        if (shape == Shape.rect) {
+            updateBounds();
+            return rect.x < maxX
+                && minX < rect.x + rect.w
+                && rect.y < maxY
+                && minY < rect.y + rect.h;
+        }
+        else if (shape == Shape.grid) {
+            return boxToGrid(rect.x, rect.y, rect.w, rect.h, this);
+        }
+        return false;
+    }
+
     public boolean overlaps(Collider other) {
-        return overlaps(other, Point.zero());
+        return overlaps(other, 0, 0);
     }
 
     public boolean overlaps(Collider other, Point offset) {
+        return overlaps(other, offset.x, offset.y);
+    }
+
+    public boolean overlaps(Collider other, int offsetX, int offsetY) {
         if (shape == Shape.rect) {
             if (other.shape == Shape.rect) {
-                return rectToRect(this, other, offset);
+                return rectToRect(this, other, offsetX, offsetY);
             }
             else if (other.shape == Shape.grid) {
-                return rectToGrid(this, other, offset);
+                return rectToGrid(this, other, offsetX, offsetY);
             }
         }
         else if (shape == Shape.grid) {
             if (other.shape == Shape.rect) {
-                return rectToGrid(other, this, offset);
+                // the grid is the one being offset, so the rect moves the other way relative to it
+                return rectToGrid(other, this, -offsetX, -offsetY);
             }
             else if (other.shape == Shape.grid) {
                 assert(false) : "Grid->Grid overlap checks not supported";
@@ -153,6 +683,134 @@ public class Collider extends Component {
         return false;
     }
 
+    /**
+     * Cast the segment from (x0, y0) to (x1, y1) in world space against this collider
+     *
+     * @param hit if non-null, filled with details of the closest hit
+     *
+     * @return whether the segment hits this collider
+     */
+    public boolean raycast(float x0, float y0, float x1, float y1, RayHit hit) {
+        float fraction = cast(x0, y0, x1 - x0, y1 - y0, hit);
+        if (fraction < 0) {
+            return false;
+        }
+        if (hit != null) {
+            hit.collider = this;
+            hit.fraction = fraction;
+            hit.x = x0 + (x1 - x0) * fraction;
+            hit.y = y0 + (y1 - y0) * fraction;
+        }
+        return true;
+    }
+
+    /**
+     * @return the fraction along the segment of the first hit, or -1 if there was no hit
+     */
+    float cast(float x0, float y0, float dx, float dy, RayHit hit) {
+        updateBounds();
+        if (shape == Shape.rect) {
+            if (hit != null) {
+                hit.cellX = hit.cellY = -1;
+            }
+            return segmentToRect(x0, y0, dx, dy, minX, minY, maxX, maxY);
+        }
+        else if (shape == Shape.grid) {
+            return segmentToGrid(x0, y0, dx, dy, hit);
+        }
+        return -1;
+    }
+
+    /**
+     * Walk the grid cells along the segment (Amanatides & Woo DDA) until a solid cell is found
+     */
+    private float segmentToGrid(float x0, float y0, float dx, float dy, RayHit hit) {
+        var tileSize = grid.tileSize;
+        var columns = grid.columns;
+        var rows = grid.rows;
+
+        // work relative to the grid and clip the segment to its extents
+        float ox = x0 - entity().position.x;
+        float oy = y0 - entity().position.y;
+        float t = segmentToRect(ox, oy, dx, dy, 0, 0, columns * tileSize, rows * tileSize);
+        if (t < 0) {
+            return -1;
+        }
+
+        // find the cell where the segment enters the grid
+        int cx = Calc.clampInt((int) Calc.floor((ox + dx * t) / tileSize), 0, columns - 1);
+        int cy = Calc.clampInt((int) Calc.floor((oy + dy * t) / tileSize), 0, rows - 1);
+
+        int stepX = (dx > 0) ? 1 : (dx < 0) ? -1 : 0;
+        int stepY = (dy > 0) ? 1 : (dy < 0) ? -1 : 0;
+        float tMaxX = (dx > 0) ? ((cx + 1) * tileSize - ox) / dx
+                    : (dx < 0) ? (cx * tileSize - ox) / dx
+                    : Float.MAX_VALUE;
+        float tMaxY = (dy > 0) ? ((cy + 1) * tileSize - oy) / dy
+                    : (dy < 0) ? (cy * tileSize - oy) / dy
+                    : Float.MAX_VALUE;
+        float tDeltaX = (dx != 0) ? tileSize / Calc.abs(dx) : Float.MAX_VALUE;
+        float tDeltaY = (dy != 0) ? tileSize / Calc.abs(dy) : Float.MAX_VALUE;
+
+        while (true) {
+            if (grid.get(cx, cy)) {
+                if (hit != null) {
+                    hit.cellX = cx;
+                    hit.cellY = cy;
+                }
+                return t;
+            }
+
+            // step into whichever neighboring cell the segment crosses into first
+            if (tMaxX < tMaxY) {
+                t = tMaxX;
+                tMaxX += tDeltaX;
+                cx += stepX;
+            } else {
+                t = tMaxY;
+                tMaxY += tDeltaY;
+                cy += stepY;
+            }
+
+            if (t > 1 || cx < 0 || cy < 0 || cx >= columns || cy >= rows) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Slab test of the segment starting at (x0, y0) with extents (dx, dy) against the specified bounds
+     *
+     * @return the fraction along the segment where it enters the bounds, 0 if it starts inside,
+     *         or -1 if the segment doesn't touch the bounds
+     */
+    static float segmentToRect(float x0, float y0, float dx, float dy, float minX, float minY, float maxX, float maxY) {
+        float tmin = 0;
+        float tmax = 1;
+
+        if (dx == 0) {
+            if (x0 < minX || x0 >= maxX) return -1;
+        } else {
+            float t1 = (minX - x0) / dx;
+            float t2 = (maxX - x0) / dx;
+            tmin = Calc.max(tmin, Calc.min(t1, t2));
+            tmax = Calc.min(tmax, Calc.max(t1, t2));
+            if (tmin > tmax) return -1;
+        }
+
+        if (dy == 0) {
+            if (y0 < minY || y0 >= maxY) return -1;
+        } else {
+            float t1 = (minY - y0) / dy;
+            float t2 = (maxY - y0) / dy;
+            tmin = Calc.max(tmin, Calc.min(t1, t2));
+            tmax = Calc.min(tmax, Calc.max(t1, t2));
+            if (tmin > tmax) return -1;
+        }
+
+        return tmin;
+    }
+
     @Override
     public void render(ShapeRenderer shapes) {
         final Color color = Color.RED.cpy();
@@ -166,66 +824,74 @@ public class Collider extends Component {
                 shapes.rect(x1, y1, rect.w, rect.h);
             }
             else if (shape == Shape.grid) {
-                for (int x = 0; x < grid.columns; x++) {
-                    for (int y = 0; y < grid.rows; y++) {
-                        if (!grid.cells[x + y * grid.columns]) continue;
-
-                        RectI rect = RectI.at(
-                                x * grid.tileSize + entity().position.x,
-                                y * grid.tileSize + entity().position.y,
-                                grid.tileSize, grid.tileSize);
-                        float x1 = rect.x + entity().position.x;
-                        float y1 = rect.y + entity().position.y;
-                        shapes.rect(x1, y1, rect.w, rect.h);
-                    }
+                // draw merged rectangles rather than every solid cell
+                var rects = grid.rects();
+                for (int i = 0; i < rects.size(); i++) {
+                    var rect = rects.get(i);
+                    float x1 = rect.x * grid.tileSize + entity().position.x;
+                    float y1 = rect.y * grid.tileSize + entity().position.y;
+                    shapes.rect(x1, y1, rect.w * grid.tileSize, rect.h * grid.tileSize);
                 }
-
             }
             shapes.setColor(Color.WHITE);
         }
     }
 
-    private static boolean rectToRect(Collider a, Collider b, Point offset) {
-        RectI ar = new RectI();
-        ar.x = a.rect.x + a.entity().position.x + offset.x;
-        ar.y = a.rect.y + a.entity().position.y + offset.y;
-        ar.w = a.rect.w;
-        ar.h = a.rect.h;
-
-        RectI br = new RectI();
-        br.x = b.rect.x + b.entity().position.x + offset.x;
-        br.y = b.rect.y + b.entity().position.y + offset.y;
-        br.w = b.rect.w;
-        br.h = b.rect.h;
-
-        return ar.overlaps(br);
+    /**
+     * Same as {@link #overlaps(Collider)}, but reads the cached bounds as they are without refreshing them
+     * note - for the collision pass's narrowphase, which refreshes every collider's bounds up front
+     *        and may call this from several threads at once
+     */
+    boolean overlapsCached(Collider other) {
+        if (shape == Shape.rect) {
+            if (other.shape == Shape.rect) {
+                return minX < other.maxX
+                    && other.minX < maxX
+                    && minY < other.maxY
+                    && other.minY < maxY;
+            }
+            else if (other.shape == Shape.grid) {
+                return boxToGrid(minX, minY, maxX - minX, maxY - minY, other);
+            }
+        }
+        else if (shape == Shape.grid && other.shape == Shape.rect) {
+            return boxToGrid(other.minX, other.minY, other.maxX - other.minX, other.maxY - other.minY, this);
+        }
+        return false;
     }
 
-    private static boolean rectToGrid(Collider a, Collider b, Point offset) {
-        // get a relative rectangle to the grid
-        RectI rect = new RectI();
-        rect.x = a.rect.x + a.entity().position.x + offset.x - b.entity().position.x;
-        rect.y = a.rect.y + a.entity().position.y + offset.y - b.entity().position.y;
-        rect.w = a.rect.w;
-        rect.h = a.rect.h;
+    private static boolean rectToRect(Collider a, Collider b, int offsetX, int offsetY) {
+        a.updateBounds();
+        b.updateBounds();
 
-        // get the cells the rectangle overlaps
-        int left   = Calc.clampInt((int) Calc.floor  (rect.x        / (float) b.grid.tileSize), 0, b.grid.columns);
-        int right  = Calc.clampInt((int) Calc.ceiling(rect.right()  / (float) b.grid.tileSize), 0, b.grid.columns);
-        int top    = Calc.clampInt((int) Calc.floor  (rect.y        / (float) b.grid.tileSize), 0, b.grid.rows);
-        int bottom = Calc.clampInt((int) Calc.ceiling(rect.bottom() / (float) b.grid.tileSize), 0, b.grid.rows);
+        // only 'a' is offset
+        return a.minX + offsetX < b.maxX
+            && b.minX < a.maxX + offsetX
+            && a.minY + offsetY < b.maxY
+            && b.minY < a.maxY + offsetY;
+    }
 
-        // check each cell
-        for (int x = left; x < right; x++) {
-            for (int y = top; y < bottom; y++) {
-                if (b.grid.cells[x + y * b.grid.columns]) {
-                    return true;
-                }
-            }
-        }
+    private static boolean rectToGrid(Collider a, Collider b, int offsetX, int offsetY) {
+        a.updateBounds();
+        return boxToGrid(a.minX + offsetX, a.minY + offsetY, a.maxX - a.minX, a.maxY - a.minY, b);
+    }
 
-        // all cells were empty
-        return false;
+    private static boolean boxToGrid(int boxX, int boxY, int boxW, int boxH, Collider b) {
+        // get the box's extents relative to the grid
+        var tileSize = b.grid.tileSize;
+        int x = boxX - b.entity().position.x;
+        int y = boxY - b.entity().position.y;
+        int r = x + boxW;
+        int t = y + boxH;
+
+        // get the cells the box overlaps
+        int left   = Calc.clampInt( Math.floorDiv( x, tileSize), 0, b.grid.columns);
+        int right  = Calc.clampInt(-Math.floorDiv(-r, tileSize), 0, b.grid.columns);
+        int top    = Calc.clampInt( Math.floorDiv( y, tileSize), 0, b.grid.rows);
+        int bottom = Calc.clampInt(-Math.floorDiv(-t, tileSize), 0, b.grid.rows);
+
+        // check each cell, only walking the chunks the box touches for chunked grids
+        return b.grid.any(left, top, right, bottom);
     }
 
 }
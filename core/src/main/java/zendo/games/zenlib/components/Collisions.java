@@ -0,0 +1,690 @@
+package zendo.games.zenlib.components;
+
+import com.badlogic.gdx.utils.Array;
+import lombok.var;
+import zendo.games.zenlib.ecs.Component;
+import zendo.games.zenlib.ecs.World;
+import zendo.games.zenlib.ecs.WorldSystem;
+import zendo.games.zenlib.utils.RectI;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Collision phase that runs once per World tick, at the start of the tick before components update
+ *
+ * Finds every overlapping pair of colliders that some subscriber is interested in
+ * using a sort-and-sweep broadphase along the x axis, then delivers enter, stay and exit
+ * events to the subscribed colliders. This replaces per-component polling with Collider.check()
+ * so that something like damage checks costs one shared pass rather than one scan per component.
+ *
+ * Overlap queries and raycasts made during the tick, like Collider.check() from a Mover, reuse the pass's ordering:
+ * a binary search finds the colliders that start within reach of the query box, and only those are tested.
+ * Colliders that move, change shape or are added after the pass are tested directly until the next pass,
+ * see {@link Collider#moved()}. Each query also compares entity positions against where they were
+ * at the pass, so an entity moved by writing its position directly is still found.
+ */
+public class Collisions implements WorldSystem {
+
+    private final World world;
+
+    // colliders sorted by their left edge, kept between ticks
+    // since they're mostly sorted already from the previous tick
+    private Collider[] sorted;
+    private int sortedCount;
+
+    // overlapping pairs found this tick, stored as [a0, b0, a1, b1, ...]
+    private Collider[] pairs;
+    private int pairCount;
+
+    private int tick;
+
+    // left edges of 'sorted' as of the last pass, the binary search key for queries
+    private int[] sortedMinX;
+
+    // entity positions of 'sorted' as of the last pass, to catch entities moved without calling moved()
+    private int[] sortedX;
+    private int[] sortedY;
+
+    // widest rect collider as of the last pass, how far left of a query box an overlapping rect can start
+    private int maxRectWidth;
+
+    // grid colliders are too wide to window, and there are few enough of them to test directly
+    private Collider[] grids;
+    private int gridCount;
+
+    // colliders whose place in 'sorted' is stale since the last pass
+    private Collider[] moved;
+    private int movedCount;
+
+    // colliders whose bounds might overlap the current query box
+    private Collider[] queryResults;
+    private int queryCount;
+
+    // stamps colliders while delivering one collider's contacts, see deliver()
+    private long mark;
+
+    // pairs that survive the broadphase, stored like 'pairs', along with who listens and the narrowphase result
+    private static final byte listens_a = 1;
+    private static final byte listens_b = 2;
+    private Collider[] candidatePairs;
+    private byte[] candidateListens;
+    private boolean[] candidateOverlaps;
+    private int candidatePairCount;
+
+    /**
+     * When enabled, narrowphase tests are split across the fork-join pool once there are
+     * at least 'parallelThreshold' candidate pairs in a tick. Results are identical to the serial path.
+     */
+    public boolean parallel = false;
+    public int parallelThreshold = 2048;
+    public ForkJoinPool pool = ForkJoinPool.commonPool();
+    private static final int parallel_grain_size = 256;
+
+    private final Collider.RayHit scratchHit = new Collider.RayHit();
+
+    /**
+     * A batch of segments to cast at once, along with reusable buffers for their results
+     */
+    public static class Rays {
+        public int count = 0;
+        public float[] segments = new float[4 * 16]; // [x0, y0, x1, y1, ...]
+        public boolean[] hit = new boolean[16];
+        public float[] fraction = new float[16];
+        public Collider[] collider = new Collider[16];
+
+        public void clear() {
+            for (int i = 0; i < count; i++) {
+                collider[i] = null;
+            }
+            count = 0;
+        }
+
+        public int add(float x0, float y0, float x1, float y1) {
+            if (count == hit.length) {
+                var capacity = count * 2;
+                segments = Arrays.copyOf(segments, capacity * 4);
+                hit      = Arrays.copyOf(hit, capacity);
+                fraction = Arrays.copyOf(fraction, capacity);
+                collider = Arrays.copyOf(collider, capacity);
+            }
+            segments[count * 4]     = x0;
+            segments[count * 4 + 1] = y0;
+            segments[count * 4 + 2] = x1;
+            segments[count * 4 + 3] = y1;
+            hit[count] = false;
+            fraction[count] = 1;
+            collider[count] = null;
+            return count++;
+        }
+    }
+
+    public Collisions(World world) {
+        this.world = world;
+        this.sorted = new Collider[64];
+        this.sortedCount = 0;
+        this.pairs = new Collider[128];
+        this.pairCount = 0;
+        this.tick = 0;
+        this.candidatePairs = new Collider[128];
+        this.candidateListens = new byte[64];
+        this.candidateOverlaps = new boolean[64];
+        this.candidatePairCount = 0;
+        this.sortedMinX = new int[64];
+        this.sortedX = new int[64];
+        this.sortedY = new int[64];
+        this.grids = new Collider[8];
+        this.gridCount = 0;
+        this.moved = new Collider[64];
+        this.movedCount = 0;
+        this.queryResults = new Collider[64];
+        this.queryCount = 0;
+    }
+
+    public int pairCount() {
+        return pairCount;
+    }
+
+    public Collider pairA(int index) {
+        return pairs[index * 2];
+    }
+
+    public Collider pairB(int index) {
+        return pairs[index * 2 + 1];
+    }
+
+    @Override
+    public void preUpdate(float dt) {
+        update();
+    }
+
+    @Override
+    public void added(Component component) {
+        if (component instanceof Collider) {
+            moved((Collider) component);
+        }
+    }
+
+    public void update() {
+        tick++;
+        gather();
+        sort();
+        index();
+        sweep();
+        deliver();
+    }
+
+    /**
+     * Note that a collider moved or changed shape since the last pass,
+     * so queries test it directly rather than looking for it where it used to be
+     */
+    public void moved(Collider collider) {
+        if (collider.moved) return;
+        collider.moved = true;
+        if (movedCount == moved.length) {
+            moved = Arrays.copyOf(moved, movedCount * 2);
+        }
+        moved[movedCount++] = collider;
+    }
+
+    /**
+     * Find every collider matching the mask that overlaps the specified world space rectangle
+     *
+     * @param buffer cleared and then filled with the colliders that were found
+     *
+     * @return the number of colliders found
+     */
+    public int overlapping(RectI rect, int mask, Array<Collider> buffer) {
+        buffer.clear();
+        query(rect.x, rect.y, rect.x + rect.w, rect.y + rect.h, mask, null);
+        for (int i = 0; i < queryCount; i++) {
+            var collider = queryResults[i];
+            if (collider.overlaps(rect)) {
+                buffer.add(collider);
+            }
+        }
+        clearQuery();
+        return buffer.size;
+    }
+
+    /**
+     * Find other colliders matching the mask that a collider overlaps when offset by (offsetX, offsetY)
+     *
+     * @param buffer if non-null, cleared and then filled with every collider found,
+     *               otherwise this stops at the first one
+     *
+     * @return the number of colliders found
+     */
+    int collide(Collider self, int mask, int offsetX, int offsetY, Array<Collider> buffer) {
+        if (buffer != null) {
+            buffer.clear();
+        }
+
+        self.updateBounds();
+        query(self.minX + offsetX, self.minY + offsetY, self.maxX + offsetX, self.maxY + offsetY, mask, self);
+
+        var found = 0;
+        for (int i = 0; i < queryCount; i++) {
+            var other = queryResults[i];
+            if (self.overlaps(other, offsetX, offsetY)) {
+                found++;
+                if (buffer == null) break;
+                buffer.add(other);
+            }
+        }
+        clearQuery();
+        return found;
+    }
+
+    /**
+     * Gather the colliders matching the mask whose bounds overlap the box into 'queryResults'
+     * note - only bounds are compared, callers do the exact shape test
+     */
+    private void query(int minX, int minY, int maxX, int maxY, int mask, Collider exclude) {
+        queryCount = 0;
+        findMoved();
+
+        // anything that moved since the pass is wherever it is now
+        for (int i = 0; i < movedCount; i++) {
+            queryCandidate(moved[i], minX, minY, maxX, maxY, mask, exclude);
+        }
+
+        for (int i = 0; i < gridCount; i++) {
+            var grid = grids[i];
+            if (!grid.moved) {
+                queryCandidate(grid, minX, minY, maxX, maxY, mask, exclude);
+            }
+        }
+
+        // rects that start far enough left to reach the box, up to the first one that starts past it
+        var start = lowerBound(minX - maxRectWidth);
+        for (int i = start; i < sortedCount; i++) {
+            if (sortedMinX[i] >= maxX) break;
+
+            var collider = sorted[i];
+            if (collider.moved || collider.shape() == Collider.Shape.grid) continue;
+            queryCandidate(collider, minX, minY, maxX, maxY, mask, exclude);
+        }
+    }
+
+    private void queryCandidate(Collider collider, int minX, int minY, int maxX, int maxY, int mask, Collider exclude) {
+        if (collider == exclude || collider.destroyed) return;
+        if ((collider.mask & mask) != mask || collider.shape() == Collider.Shape.none) return;
+        if (collider.entity() == null || collider.world() != world) return;
+
+        collider.updateBounds();
+        if (collider.minX >= maxX || minX >= collider.maxX || collider.minY >= maxY || minY >= collider.maxY) return;
+
+        if (queryCount == queryResults.length) {
+            queryResults = Arrays.copyOf(queryResults, queryCount * 2);
+        }
+        queryResults[queryCount++] = collider;
+    }
+
+    /**
+     * Treat rects whose entity isn't where it was at the pass as moved,
+     * in case something wrote to the entity's position without calling moved()
+     * note - grids are always tested directly, so they don't need checking
+     */
+    private void findMoved() {
+        for (int i = 0; i < sortedCount; i++) {
+            var collider = sorted[i];
+            if (collider.moved || collider.destroyed || collider.shape() == Collider.Shape.grid) continue;
+
+            var entity = collider.entity();
+            if (entity == null) continue;
+            if (entity.position.x != sortedX[i] || entity.position.y != sortedY[i]) {
+                moved(collider);
+            }
+        }
+    }
+
+    private void clearQuery() {
+        Arrays.fill(queryResults, 0, queryCount, null);
+        queryCount = 0;
+    }
+
+    /**
+     * @return the first index in 'sorted' whose left edge was at or past x as of the last pass
+     */
+    private int lowerBound(int x) {
+        int low = 0;
+        int high = sortedCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedMinX[mid] < x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Find the closest collider matching the mask along the segment from (x0, y0) to (x1, y1)
+     *
+     * @param hit if non-null, filled with details of the closest hit
+     *
+     * @return whether anything was hit
+     */
+    public boolean raycast(float x0, float y0, float x1, float y1, int mask, Collider.RayHit hit) {
+        querySegment(x0, y0, x1, y1, mask);
+        var result = castSegment(x0, y0, x1 - x0, y1 - y0, hit, false);
+        clearQuery();
+        return result;
+    }
+
+    /**
+     * @return whether the segment from (x0, y0) to (x1, y1) is clear of colliders matching the mask
+     */
+    public boolean lineOfSight(float x0, float y0, float x1, float y1, int mask) {
+        querySegment(x0, y0, x1, y1, mask);
+        var blocked = castSegment(x0, y0, x1 - x0, y1 - y0, null, true);
+        clearQuery();
+        return !blocked;
+    }
+
+    /**
+     * Cast every segment in the batch, filling in the closest hit for each one
+     */
+    public void raycast(Rays rays, int mask) {
+        var hit = scratchHit;
+        for (int i = 0; i < rays.count; i++) {
+            var segments = rays.segments;
+            float x0 = segments[i * 4];
+            float y0 = segments[i * 4 + 1];
+            float x1 = segments[i * 4 + 2];
+            float y1 = segments[i * 4 + 3];
+            hit.clear();
+            querySegment(x0, y0, x1, y1, mask);
+            rays.hit[i] = castSegment(x0, y0, x1 - x0, y1 - y0, hit, false);
+            clearQuery();
+            rays.fraction[i] = hit.fraction;
+            rays.collider[i] = hit.collider;
+        }
+        hit.clear();
+    }
+
+    /**
+     * Check line of sight for every segment in the batch, rays.hit[i] is set when the segment is blocked
+     * note - this stops at the first blocker found so fraction and collider are not filled in
+     */
+    public void lineOfSight(Rays rays, int mask) {
+        for (int i = 0; i < rays.count; i++) {
+            var segments = rays.segments;
+            float x0 = segments[i * 4];
+            float y0 = segments[i * 4 + 1];
+            float x1 = segments[i * 4 + 2];
+            float y1 = segments[i * 4 + 3];
+            querySegment(x0, y0, x1, y1, mask);
+            rays.hit[i] = castSegment(x0, y0, x1 - x0, y1 - y0, null, true);
+            clearQuery();
+        }
+    }
+
+    /**
+     * Gather the colliders matching the mask whose bounds might be crossed by the segment into 'queryResults'
+     * note - the box is padded by a unit so segments along an edge, or with no width or height, still find what they touch
+     */
+    private void querySegment(float x0, float y0, float x1, float y1, int mask) {
+        query((int) Math.floor(Math.min(x0, x1)) - 1,
+              (int) Math.floor(Math.min(y0, y1)) - 1,
+              (int) Math.ceil(Math.max(x0, x1)) + 1,
+              (int) Math.ceil(Math.max(y0, y1)) + 1,
+              mask, null);
+    }
+
+    private boolean castSegment(float x0, float y0, float dx, float dy, Collider.RayHit hit, boolean any) {
+        float closest = 2;
+        int cellX = -1;
+        int cellY = -1;
+        Collider closestCollider = null;
+
+        for (int i = 0; i < queryCount; i++) {
+            var candidate = queryResults[i];
+
+            // cheap rejection against cached bounds before doing a full cast
+            var t = Collider.segmentToRect(x0, y0, dx, dy, candidate.minX, candidate.minY, candidate.maxX, candidate.maxY);
+            if (t < 0 || t >= closest) continue;
+
+            t = candidate.cast(x0, y0, dx, dy, hit);
+            if (t < 0 || t >= closest) continue;
+
+            if (any) return true;
+
+            closest = t;
+            closestCollider = candidate;
+            if (hit != null) {
+                cellX = hit.cellX;
+                cellY = hit.cellY;
+            }
+        }
+
+        if (closestCollider == null) {
+            return false;
+        }
+        if (hit != null) {
+            hit.collider = closestCollider;
+            hit.fraction = closest;
+            hit.x = x0 + dx * closest;
+            hit.y = y0 + dy * closest;
+            hit.cellX = cellX;
+            hit.cellY = cellY;
+        }
+        return true;
+    }
+
+    private void gather() {
+        // the pass puts everything back in order
+        for (int i = 0; i < movedCount; i++) {
+            moved[i].moved = false;
+            moved[i] = null;
+        }
+        movedCount = 0;
+
+        // stamp and bound every live collider, appending ones we haven't seen before
+        // note - refreshing bounds here is what keeps the narrowphase read-only, and safe to run in parallel
+        var collider = world.first(Collider.class);
+        while (collider != null) {
+            collider.sweepTick = tick;
+            collider.updateBounds();
+            if (!collider.inSweep) {
+                collider.inSweep = true;
+                if (sortedCount == sorted.length) {
+                    var grown = new Collider[sorted.length * 2];
+                    System.arraycopy(sorted, 0, grown, 0, sortedCount);
+                    sorted = grown;
+                }
+                sorted[sortedCount++] = collider;
+            }
+            collider = (Collider) collider.next();
+        }
+
+        // drop colliders that are no longer alive
+        int count = 0;
+        for (int i = 0; i < sortedCount; i++) {
+            var c = sorted[i];
+            if (c.sweepTick == tick && !c.destroyed) {
+                sorted[count++] = c;
+            } else {
+                c.inSweep = false;
+            }
+        }
+        for (int i = count; i < sortedCount; i++) {
+            sorted[i] = null;
+        }
+        sortedCount = count;
+    }
+
+    private void sort() {
+        // insertion sort, nearly linear since things don't move far between ticks
+        for (int i = 1; i < sortedCount; i++) {
+            var c = sorted[i];
+            int j = i - 1;
+            while (j >= 0 && sorted[j].minX > c.minX) {
+                sorted[j + 1] = sorted[j];
+                j--;
+            }
+            sorted[j + 1] = c;
+        }
+    }
+
+    private void index() {
+        // note the order the pass found for queries to search through until the next pass
+        if (sortedMinX.length < sortedCount) {
+            sortedMinX = new int[sorted.length];
+            sortedX = new int[sorted.length];
+            sortedY = new int[sorted.length];
+        }
+        Arrays.fill(grids, 0, gridCount, null);
+        gridCount = 0;
+        maxRectWidth = 0;
+        for (int i = 0; i < sortedCount; i++) {
+            var collider = sorted[i];
+            sortedMinX[i] = collider.minX;
+            sortedX[i] = collider.entity().position.x;
+            sortedY[i] = collider.entity().position.y;
+            if (collider.shape() == Collider.Shape.grid) {
+                if (gridCount == grids.length) {
+                    grids = Arrays.copyOf(grids, gridCount * 2);
+                }
+                grids[gridCount++] = collider;
+            } else {
+                maxRectWidth = Math.max(maxRectWidth, collider.maxX - collider.minX);
+            }
+        }
+    }
+
+    private void sweep() {
+        // broadphase: collect candidate pairs whose bounds overlap and that somebody listens for
+        candidatePairCount = 0;
+        for (int i = 0; i < sortedCount; i++) {
+            var a = sorted[i];
+            for (int j = i + 1; j < sortedCount; j++) {
+                var b = sorted[j];
+
+                // everything after this starts past the right edge of 'a'
+                if (b.minX >= a.maxX) break;
+
+                // bounds don't overlap vertically
+                if (b.minY >= a.maxY || a.minY >= b.maxY) continue;
+
+                // grid->grid overlaps aren't supported
+                if (a.shape() == Collider.Shape.grid && b.shape() == Collider.Shape.grid) continue;
+
+                // nobody cares about this pair
+                var aListens = a.listensTo(b);
+                var bListens = b.listensTo(a);
+                if (!aListens && !bListens) continue;
+
+                addCandidatePair(a, b, (byte) ((aListens ? listens_a : 0) | (bListens ? listens_b : 0)));
+            }
+        }
+
+        // narrowphase: the pair tests only read cached bounds and cells
+        // so they can be split across threads when there are lots of them
+        if (candidateOverlaps.length < candidatePairCount) {
+            candidateOverlaps = new boolean[candidatePairs.length / 2];
+        }
+        if (parallel && candidatePairCount >= parallelThreshold) {
+            pool.invoke(new Narrowphase(0, candidatePairCount));
+        } else {
+            narrowphase(0, candidatePairCount);
+        }
+
+        // merge results in candidate order, which keeps things deterministic regardless of threading
+        pairCount = 0;
+        for (int i = 0; i < candidatePairCount; i++) {
+            var a = candidatePairs[i * 2];
+            var b = candidatePairs[i * 2 + 1];
+            if (candidateOverlaps[i]) {
+                addPair(a, b);
+                if ((candidateListens[i] & listens_a) != 0) a.contacts.add(b);
+                if ((candidateListens[i] & listens_b) != 0) b.contacts.add(a);
+            }
+            candidatePairs[i * 2] = null;
+            candidatePairs[i * 2 + 1] = null;
+        }
+    }
+
+    private void narrowphase(int from, int to) {
+        for (int i = from; i < to; i++) {
+            candidateOverlaps[i] = candidatePairs[i * 2].overlapsCached(candidatePairs[i * 2 + 1]);
+        }
+    }
+
+    private class Narrowphase extends RecursiveAction {
+        final int from;
+        final int to;
+
+        Narrowphase(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= parallel_grain_size) {
+                narrowphase(from, to);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Narrowphase(from, mid), new Narrowphase(mid, to));
+            }
+        }
+    }
+
+    private void addCandidatePair(Collider a, Collider b, byte listens) {
+        if (candidatePairCount * 2 == candidatePairs.length) {
+            candidatePairs = Arrays.copyOf(candidatePairs, candidatePairs.length * 2);
+            candidateListens = Arrays.copyOf(candidateListens, candidatePairs.length / 2);
+        }
+        candidatePairs[candidatePairCount * 2]     = a;
+        candidatePairs[candidatePairCount * 2 + 1] = b;
+        candidateListens[candidatePairCount] = listens;
+        candidatePairCount++;
+    }
+
+    private void addPair(Collider a, Collider b) {
+        if (pairCount * 2 == pairs.length) {
+            var grown = new Collider[pairs.length * 2];
+            System.arraycopy(pairs, 0, grown, 0, pairCount * 2);
+            pairs = grown;
+        }
+        pairs[pairCount * 2]     = a;
+        pairs[pairCount * 2 + 1] = b;
+        pairCount++;
+    }
+
+    private void deliver() {
+        for (int i = 0; i < sortedCount; i++) {
+            var self = sorted[i];
+            if (self.subscriptions == null && self.previousContacts.isEmpty()) continue;
+
+            // note - callbacks are free to destroy things, including 'self',
+            //        in which case its contact lists get cleared out from under us
+            var contacts = self.contacts;
+            var previous = self.previousContacts;
+
+            // stamp both contact lists so membership checks are constant time instead of a list scan
+            // note - the stamp is unique to this collider on this tick, so stale stamps never match
+            mark++;
+            for (int p = 0; p < previous.size(); p++) {
+                previous.get(p).previousMark = mark;
+            }
+            for (int c = 0; c < contacts.size(); c++) {
+                contacts.get(c).contactMark = mark;
+            }
+
+            // enter and stay
+            for (int c = 0; c < contacts.size() && !self.destroyed; c++) {
+                var other = contacts.get(c);
+                if (other.destroyed) continue;
+
+                var stayed = (other.previousMark == mark);
+                notify(self, other, stayed ? Event.stay : Event.enter);
+            }
+
+            // exit
+            for (int p = 0; p < previous.size() && !self.destroyed; p++) {
+                var other = previous.get(p);
+                if (other.contactMark != mark) {
+                    notify(self, other, Event.exit);
+                }
+            }
+
+            // current contacts become previous contacts for next tick
+            previous.clear();
+            self.previousContacts = contacts;
+            self.contacts = previous;
+        }
+    }
+
+    private enum Event { enter, stay, exit }
+
+    private static void notify(Collider self, Collider other, Event event) {
+        List<Collider.Subscription> subscriptions = self.subscriptions;
+        if (subscriptions == null) return;
+
+        for (int s = 0; s < subscriptions.size(); s++) {
+            var subscription = subscriptions.get(s);
+            if (!subscription.matches(other)) continue;
+
+            Collider.OnContact callback;
+            switch (event) {
+                case enter: callback = subscription.onEnter; break;
+                case stay:  callback = subscription.onStay;  break;
+                default:    callback = subscription.onExit;  break;
+            }
+            if (callback != null) {
+                callback.contact(self, other);
+            }
+
+            // callback may have destroyed us
+            if (self.subscriptions == null) return;
+        }
+    }
+
+}
@@ -11,11 +11,14 @@ public class Hurtable extends Component {
     }
 
     public Collider collider;
+    public Collider attacker; // the collider that caused the most recent hurt
     public OnHurt onHurt;
     public int hurtBy;
     public float stunTimer;
     public float flickerTimer;
 
+    private Collider.Subscription subscription;
+
     public Hurtable() {
         reset();
     }
@@ -24,10 +27,12 @@ public class Hurtable extends Component {
     public void reset() {
         super.reset();
         collider = null;
+        attacker = null;
         onHurt = null;
         hurtBy = 0;
         stunTimer = 0;
         flickerTimer = 0;
+        subscription = null;
     }
 
     @Override
@@ -36,22 +41,37 @@ public class Hurtable extends Component {
         if (other instanceof Hurtable) {
             var hurtable = (Hurtable) other;
             this.collider        = hurtable.collider;
+            this.attacker        = hurtable.attacker;
             this.onHurt          = hurtable.onHurt;
             this.hurtBy          = hurtable.hurtBy;
             this.stunTimer       = hurtable.stunTimer;
             this.flickerTimer    = hurtable.flickerTimer;
+            this.subscription    = null;
+        }
+    }
+
+    @Override
+    public void destroyed() {
+        if (collider != null && subscription != null) {
+            collider.unsubscribe(subscription);
+        }
+        subscription = null;
+    }
+
+    @Override
+    public void awake() {
+        // hurt checks are handled by contact events from the World's collision pass
+        if (collider != null) {
+            subscription = collider.subscribe(hurtBy);
+            subscription.onEnter = this::onContact;
+            subscription.onStay  = this::onContact;
         }
     }
 
     @Override
     public void update(float dt) {
-        if (collider != null && onHurt != null && stunTimer <= 0) {
-            if (collider.check(hurtBy)) {
-                Time.pause_for(0.1f);
-                stunTimer = 0.5f;
-                flickerTimer = 0.5f;
-                onHurt.hurt(this);
-            }
+        if (subscription != null) {
+            subscription.mask = hurtBy;
         }
 
         stunTimer -= dt;
@@ -68,4 +88,14 @@ public class Hurtable extends Component {
         }
     }
 
+    private void onContact(Collider self, Collider other) {
+        if (onHurt != null && stunTimer <= 0) {
+            Time.pause_for(0.1f);
+            stunTimer = 0.5f;
+            flickerTimer = 0.5f;
+            attacker = other;
+            onHurt.hurt(this);
+        }
+    }
+
 }
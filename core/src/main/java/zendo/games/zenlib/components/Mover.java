@@ -5,6 +5,7 @@ import lombok.var;
 import zendo.games.zenlib.utils.Calc;
 import zendo.games.zenlib.ecs.Component;
 import zendo.games.zenlib.ecs.Mask;
+import zendo.games.zenlib.utils.Fixed;
 import zendo.games.zenlib.utils.Point;
 
 public class Mover extends Component {
@@ -20,7 +21,18 @@ public class Mover extends Component {
     public float gravity;
     public float friction;
 
-    private Vector2 remainder;
+    // fixed point mode, see Fixed
+    // speeds are in 16.16 pixels per second and the integration is bit-exact across machines
+    public boolean fixedPoint;
+    public Point fixedSpeed;
+    public int fixedGravity;
+    public int fixedFriction;
+
+    Vector2 remainder;
+    private Point fixedRemainder;
+
+    // set once the mover is removed from the world, so batched movement can skip it
+    boolean destroyed;
 
     public Mover() {
         reset();
@@ -35,13 +47,25 @@ public class Mover extends Component {
         if (speed == null) {
             speed = new Vector2();
         }
+        if (fixedRemainder == null) {
+            fixedRemainder = Point.zero();
+        }
+        if (fixedSpeed == null) {
+            fixedSpeed = Point.zero();
+        }
         remainder.set(0, 0);
         speed.set(0, 0);
+        fixedRemainder.x = fixedRemainder.y = 0;
+        fixedSpeed.x = fixedSpeed.y = 0;
+        fixedPoint = false;
+        fixedGravity = 0;
+        fixedFriction = 0;
         collider = null;
         onHitX = null;
         onHitY = null;
         gravity = 0;
         friction = 0;
+        destroyed = false;
     }
 
     @Override
@@ -50,24 +74,81 @@ public class Mover extends Component {
         if (other instanceof Mover) {
             var mover = (Mover) other;
             this.remainder.set(mover.remainder);
-            this.speed.set(mover.remainder);
+            this.speed.set(mover.speed);
+            this.fixedPoint       = mover.fixedPoint;
+            this.fixedRemainder.x = mover.fixedRemainder.x;
+            this.fixedRemainder.y = mover.fixedRemainder.y;
+            this.fixedSpeed.x     = mover.fixedSpeed.x;
+            this.fixedSpeed.y     = mover.fixedSpeed.y;
+            this.fixedGravity     = mover.fixedGravity;
+            this.fixedFriction    = mover.fixedFriction;
             this.collider = mover.collider;
             this.onHitX   = mover.onHitX;
             this.onHitY   = mover.onHitY;
             this.gravity  = mover.gravity;
             this.friction = mover.friction;
+            this.destroyed = false;
         }
     }
 
+    @Override
+    public void destroyed() {
+        destroyed = true;
+    }
+
+    /**
+     * Speed in pixels per second, in whichever mode the mover is in
+     * note - in fixed point mode these round to 16.16, code that needs bit-exact movement should use fixedSpeed
+     */
+    public float speedX() {
+        return (fixedPoint) ? Fixed.toFloat(fixedSpeed.x) : speed.x;
+    }
+
+    public float speedY() {
+        return (fixedPoint) ? Fixed.toFloat(fixedSpeed.y) : speed.y;
+    }
+
+    public void setSpeedX(float x) {
+        if (fixedPoint) {
+            fixedSpeed.x = Fixed.of(x);
+        } else {
+            speed.x = x;
+        }
+    }
+
+    public void setSpeedY(float y) {
+        if (fixedPoint) {
+            fixedSpeed.y = Fixed.of(y);
+        } else {
+            speed.y = y;
+        }
+    }
+
+    public void setSpeed(float x, float y) {
+        setSpeedX(x);
+        setSpeedY(y);
+    }
+
     @Override
     public void update(float dt) {
+        if (fixedPoint) {
+            updateFixed(dt);
+            return;
+        }
+
+        // integrated along with every other mover by the World's Movers system
+        var movers = world().system(Movers.class);
+        if (movers != null && movers.enabled) {
+            return;
+        }
+
         // apply friction maybe
         if (friction > 0 && onGround()) {
             speed.x = Calc.approach(speed.x, 0, friction * dt);
         }
 
         // apply gravity
-        if (gravity != 0 && (collider == null || !collider.check(Mask.solid, Point.at(0, -1)))) {
+        if (gravity != 0 && (collider == null || !collider.check(Mask.solid, 0, -1))) {
             speed.y += gravity * dt;
         }
 
@@ -88,12 +169,44 @@ public class Mover extends Component {
         moveY(toMoveY);
     }
 
+    private void updateFixed(float dt) {
+        // the same timestep always converts to the same fixed value
+        var step = Fixed.of(dt);
+
+        // apply friction maybe
+        if (fixedFriction > 0 && onGround()) {
+            fixedSpeed.x = Calc.approach(fixedSpeed.x, 0, Fixed.mul(fixedFriction, step));
+        }
+
+        // apply gravity
+        if (fixedGravity != 0 && (collider == null || !collider.check(Mask.solid, 0, -1))) {
+            fixedSpeed.y += Fixed.mul(fixedGravity, step);
+        }
+
+        // get the amount we should move, including remainder from previous frame
+        int totalX = fixedRemainder.x + Fixed.mul(fixedSpeed.x, step);
+        int totalY = fixedRemainder.y + Fixed.mul(fixedSpeed.y, step);
+
+        // round to whole pixels, keeping the subpixel remainder
+        int toMoveX = Fixed.trunc(totalX);
+        int toMoveY = Fixed.trunc(totalY);
+        fixedRemainder.x = totalX - Fixed.of(toMoveX);
+        fixedRemainder.y = totalY - Fixed.of(toMoveY);
+
+        // move by integer values
+        moveX(toMoveX);
+        moveY(toMoveY);
+    }
+
     public boolean moveX(int amount) {
+        if (amount != 0) {
+            moved();
+        }
         if (collider != null) {
             int sign = Calc.sign(amount);
 
             while (amount != 0) {
-                if (collider.check(Mask.solid, Point.at(sign, 0))) {
+                if (collider.check(Mask.solid, sign, 0)) {
                     if (onHitX != null) {
                         onHitX.hit(this);
                     } else {
@@ -113,11 +226,14 @@ public class Mover extends Component {
     }
 
     public boolean moveY(int amount) {
+        if (amount != 0) {
+            moved();
+        }
         if (collider != null) {
             int sign = Calc.sign(amount);
 
             while (amount != 0) {
-                if (collider.check(Mask.solid, Point.at(0, sign))) {
+                if (collider.check(Mask.solid, 0, sign)) {
                     if (onHitY != null) {
                         onHitY.hit(this);
                     } else {
@@ -136,14 +252,29 @@ public class Mover extends Component {
         return false;
     }
 
+    private void moved() {
+        // every collider on the entity moves with it, not just the one used for solid checks
+        var components = entity().components;
+        for (int i = 0; i < components.size(); i++) {
+            var component = components.get(i);
+            if (component instanceof Collider) {
+                ((Collider) component).moved();
+            }
+        }
+    }
+
     public void stopX() {
         speed.x = 0;
         remainder.x = 0;
+        fixedSpeed.x = 0;
+        fixedRemainder.x = 0;
     }
 
     public void stopY() {
         speed.y = 0;
         remainder.y = 0;
+        fixedSpeed.y = 0;
+        fixedRemainder.y = 0;
     }
 
     public void stop() {
@@ -160,7 +291,7 @@ public class Mover extends Component {
             return false;
         }
 
-        boolean hit_solid = collider.check(Mask.solid, Point.at(0, dist));
+        boolean hit_solid = collider.check(Mask.solid, 0, dist);
 
         return hit_solid;
     }
@@ -0,0 +1,161 @@
+package zendo.games.zenlib.components;
+
+import lombok.var;
+import zendo.games.zenlib.ecs.Mask;
+import zendo.games.zenlib.ecs.World;
+import zendo.games.zenlib.ecs.WorldSystem;
+
+import java.util.Arrays;
+
+/**
+ * Batched integration for every float mode Mover in a World, at the end of the tick once everything has set speeds
+ *
+ * When enabled, Mover.update() defers to this system which copies mover state into
+ * primitive arrays, integrates friction, gravity and subpixel remainders for all of them
+ * in one tight loop, then resolves the resulting integer moves against solids in a second pass.
+ * Per-mover OnHit callbacks are still only invoked when a move actually hits something.
+ *
+ * Ground checks and solid checks while moving go through Collider.check(),
+ * which the World's Collisions system answers from its broadphase rather than by scanning every collider.
+ *
+ * note - ground checks for every mover happen before any of them move,
+ *        whereas unbatched movers each see the results of the ones updated before them
+ */
+public class Movers implements WorldSystem {
+
+    public boolean enabled = false;
+
+    private final World world;
+
+    private Mover[] movers;
+    private float[] speedX;
+    private float[] speedY;
+    private float[] remainderX;
+    private float[] remainderY;
+    private float[] gravity;
+    private float[] friction;
+    private boolean[] grounded;
+    private boolean[] hasCollider;
+    private int[] moveX;
+    private int[] moveY;
+    private int count;
+
+    public Movers(World world) {
+        this.world = world;
+        allocate(64);
+    }
+
+    private void allocate(int capacity) {
+        movers      = (movers      == null) ? new Mover[capacity]   : Arrays.copyOf(movers, capacity);
+        speedX      = (speedX      == null) ? new float[capacity]   : Arrays.copyOf(speedX, capacity);
+        speedY      = (speedY      == null) ? new float[capacity]   : Arrays.copyOf(speedY, capacity);
+        remainderX  = (remainderX  == null) ? new float[capacity]   : Arrays.copyOf(remainderX, capacity);
+        remainderY  = (remainderY  == null) ? new float[capacity]   : Arrays.copyOf(remainderY, capacity);
+        gravity     = (gravity     == null) ? new float[capacity]   : Arrays.copyOf(gravity, capacity);
+        friction    = (friction    == null) ? new float[capacity]   : Arrays.copyOf(friction, capacity);
+        grounded    = (grounded    == null) ? new boolean[capacity] : Arrays.copyOf(grounded, capacity);
+        hasCollider = (hasCollider == null) ? new boolean[capacity] : Arrays.copyOf(hasCollider, capacity);
+        moveX       = (moveX       == null) ? new int[capacity]     : Arrays.copyOf(moveX, capacity);
+        moveY       = (moveY       == null) ? new int[capacity]     : Arrays.copyOf(moveY, capacity);
+    }
+
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public void postUpdate(float dt) {
+        if (enabled) {
+            update(dt);
+        }
+    }
+
+    public void update(float dt) {
+        gather();
+        integrate(dt);
+        scatter();
+        resolve();
+
+        // don't hang on to references until next tick
+        Arrays.fill(movers, 0, count, null);
+    }
+
+    private void gather() {
+        count = 0;
+        var mover = world.first(Mover.class);
+        while (mover != null) {
+            if (mover.active && mover.entity().active && !mover.fixedPoint) {
+                if (count == movers.length) {
+                    allocate(count * 2);
+                }
+                movers[count]      = mover;
+                speedX[count]      = mover.speed.x;
+                speedY[count]      = mover.speed.y;
+                remainderX[count]  = mover.remainder.x;
+                remainderY[count]  = mover.remainder.y;
+                gravity[count]     = mover.gravity;
+                friction[count]    = mover.friction;
+                hasCollider[count] = (mover.collider != null);
+                // one ground check serves both friction and gravity
+                grounded[count]    = (mover.collider != null
+                                   && (mover.friction > 0 || mover.gravity != 0)
+                                   && mover.collider.check(Mask.solid, 0, -1));
+                count++;
+            }
+            mover = (Mover) mover.next();
+        }
+    }
+
+    private void integrate(float dt) {
+        for (int i = 0; i < count; i++) {
+            // apply friction maybe
+            if (friction[i] > 0 && grounded[i]) {
+                float delta = friction[i] * dt;
+                float sx = speedX[i];
+                speedX[i] = (sx < 0) ? Math.min(sx + delta, 0) : Math.max(sx - delta, 0);
+            }
+
+            // apply gravity
+            if (gravity[i] != 0 && (!hasCollider[i] || !grounded[i])) {
+                speedY[i] += gravity[i] * dt;
+            }
+
+            // get the amount we should move, including remainder from previous frame
+            float totalX = remainderX[i] + speedX[i] * dt;
+            float totalY = remainderY[i] + speedY[i] * dt;
+
+            // round to integer values since we only move in pixels at a time
+            int toMoveX = (int) totalX;
+            int toMoveY = (int) totalY;
+            moveX[i] = toMoveX;
+            moveY[i] = toMoveY;
+
+            // store the remainder floating values
+            remainderX[i] = totalX - toMoveX;
+            remainderY[i] = totalY - toMoveY;
+        }
+    }
+
+    private void scatter() {
+        for (int i = 0; i < count; i++) {
+            var mover = movers[i];
+            mover.speed.x = speedX[i];
+            mover.speed.y = speedY[i];
+            mover.remainder.x = remainderX[i];
+            mover.remainder.y = remainderY[i];
+        }
+    }
+
+    private void resolve() {
+        for (int i = 0; i < count; i++) {
+            var mover = movers[i];
+
+            // a hit callback from an earlier mover might have destroyed or deactivated this one
+            if (mover.destroyed || !mover.active) continue;
+
+            if (moveX[i] != 0) mover.moveX(moveX[i]);
+            if (moveY[i] != 0) mover.moveY(moveY[i]);
+        }
+    }
+
+}
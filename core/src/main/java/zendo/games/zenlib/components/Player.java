@@ -7,23 +7,30 @@ import lombok.var;
 import zendo.games.zenlib.ecs.Mask;
 import zendo.games.zenlib.utils.Calc;
 import zendo.games.zenlib.ecs.Component;
+import zendo.games.zenlib.utils.Fixed;
 import zendo.games.zenlib.utils.RectI;
 import zendo.games.zenlib.utils.Time;
 
 public class Player extends Component {
 
-    public static final float gravity = -450;
+    // note - speeds and accelerations are 16.16 fixed point, see Fixed, the player's mover runs in fixed point mode
+    public static final int gravity = Fixed.of(-450);
 
-    private static final float ground_accel = 500;
-    private static final float ground_accel_run = 800;
-    private static final float friction = 800;
-    private static final float max_ground_speed = 100;
-    private static final float max_ground_speed_run = 200;
-    private static final float jump_impulse = 130;
+    private static final int ground_accel = Fixed.of(500);
+    private static final int ground_accel_run = Fixed.of(800);
+    private static final int friction = Fixed.of(800);
+    private static final int max_ground_speed = Fixed.of(100);
+    private static final int max_ground_speed_run = Fixed.of(200);
+    private static final int jump_impulse = Fixed.of(130);
     private static final float jump_time = 0.18f;
-    private static final float hurt_friction = 200;
+    private static final int hurt_friction = Fixed.of(200);
     private static final float hurt_duration = 0.5f;
     private static final float invincible_duration = 1.5f;
+    private static final int max_speed_decel = Fixed.of(2000);
+    private static final int hover_speed = Fixed.of(20);
+    private static final int hover_gravity_scale = Fixed.of(0.4f);
+    private static final int hurt_bounce_x = Fixed.of(100);
+    private static final int hurt_bounce_y = Fixed.of(80);
 
     enum State {
         normal, attack, hurt
@@ -38,6 +45,8 @@ public class Player extends Component {
     private boolean onGround = false;
     private State state = State.normal;
     private Collider attackCollider = null;
+    private Collider hurtCollider = null;
+    private Collider.Subscription hurtSubscription = null;
 
     private static class InputState {
         int move_dir = 0;
@@ -91,6 +100,11 @@ public class Player extends Component {
         // get components
         var anim = entity().get(Animator.class);
         var mover = entity().get(Mover.class);
+        assert(mover.fixedPoint) : "Player movement is fixed point, its Mover must be too";
+        var speed = mover.fixedSpeed;
+
+        // the same timestep always converts to the same fixed value
+        var step = Fixed.of(dt);
 
         var wasOnGround = onGround;
         onGround = mover.onGround();
@@ -123,7 +137,7 @@ public class Player extends Component {
                     anim.play("idle");
                 }
             } else {
-                if (mover.speed.y > 0) {
+                if (speed.y > 0) {
                     anim.play("jump");
                 } else {
                     anim.play("fall");
@@ -134,18 +148,19 @@ public class Player extends Component {
             {
                 // acceleration
                 var accel = (input.run_held) ? ground_accel_run : ground_accel;
-                mover.speed.x += input.move_dir * accel * dt;
+                var speedX = speed.x + input.move_dir * Fixed.mul(accel, step);
 
                 // max speed
                 var max = (input.run_held) ? max_ground_speed_run : max_ground_speed;
-                if (Calc.abs(mover.speed.x) > max) {
-                    mover.speed.x = Calc.approach(mover.speed.x, Calc.sign(mover.speed.x) * max, 2000 * dt);
+                if (Calc.abs(speedX) > max) {
+                    speedX = Calc.approach(speedX, Calc.sign(speedX) * max, Fixed.mul(max_speed_decel, step));
                 }
 
                 // friction
                 if (input.move_dir == 0 && onGround) {
-                    mover.speed.x = Calc.approach(mover.speed.x, 0, friction * dt);
+                    speedX = Calc.approach(speedX, 0, Fixed.mul(friction, step));
                 }
+                speed.x = speedX;
 
                 // facing direction
                 if (input.move_dir != 0) {
@@ -228,7 +243,7 @@ public class Player extends Component {
 
             // friction
             if (onGround) {
-                mover.speed.x = Calc.approach(mover.speed.x, 0, hurt_friction * dt);
+                speed.x = Calc.approach(speed.x, 0, Fixed.mul(hurt_friction, step));
             }
         }
 
@@ -236,7 +251,7 @@ public class Player extends Component {
         if (jumpTimer > 0) {
             jumpTimer -= dt;
 
-            mover.speed.y = jump_impulse;
+            speed.y = jump_impulse;
 
             if (!input.jump_held) {
                 jumpTimer = 0;
@@ -246,12 +261,12 @@ public class Player extends Component {
         // gravity
         if (!onGround) {
             // make gravity more 'hovery' when in the air
-            float grav = gravity;
-            if (Calc.abs(mover.speed.y) < 20 && input.jump_held) {
-                grav *= 0.4f;
+            var grav = gravity;
+            if (Calc.abs(speed.y) < hover_speed && input.jump_held) {
+                grav = Fixed.mul(grav, hover_gravity_scale);
             }
 
-            mover.speed.y += grav * dt;
+            speed.y += Fixed.mul(grav, step);
         }
 
         // invincible timer (somewhat duplicates logic from Hurtable component)
@@ -266,27 +281,52 @@ public class Player extends Component {
                 entity().visible = true;
             }
         }
+    }
 
+    @Override
+    public void awake() {
         // hurt check (could be done with a Hurtable component)
-        var hitbox = get(Collider.class);
-        if (invincibleTimer <= 0 && hitbox.check(Mask.enemy)) {
-            Time.pause_for(0.1f);
-            anim.play("hurt");
+        // contacts with enemies are delivered by the World's collision pass
+        hurtCollider = get(Collider.class);
+        if (hurtCollider != null) {
+            hurtSubscription = hurtCollider.subscribe(Mask.enemy);
+            hurtSubscription.onEnter = this::onEnemyContact;
+            hurtSubscription.onStay  = this::onEnemyContact;
+        }
+    }
 
-            // stop attack in progress
-            if (attackCollider != null) {
-                attackCollider.destroy();
-                attackCollider = null;
-            }
+    @Override
+    public void destroyed() {
+        if (hurtCollider != null && hurtSubscription != null) {
+            hurtCollider.unsubscribe(hurtSubscription);
+        }
+        hurtCollider = null;
+        hurtSubscription = null;
+    }
+
+    private void onEnemyContact(Collider self, Collider enemy) {
+        if (invincibleTimer > 0) return;
+
+        var anim = entity().get(Animator.class);
+        var mover = entity().get(Mover.class);
 
-            // for now bounce back is always the reverse direction player is facing
-            mover.speed.set(-facing * 100, 80);
+        Time.pause_for(0.1f);
+        anim.play("hurt");
 
-            health--;
-            hurtTimer = hurt_duration;
-            invincibleTimer = invincible_duration;
-            state = State.hurt;
+        // stop attack in progress
+        if (attackCollider != null) {
+            attackCollider.destroy();
+            attackCollider = null;
         }
+
+        // for now bounce back is always the reverse direction player is facing
+        mover.fixedSpeed.x = -facing * hurt_bounce_x;
+        mover.fixedSpeed.y = hurt_bounce_y;
+
+        health--;
+        hurtTimer = hurt_duration;
+        invincibleTimer = invincible_duration;
+        state = State.hurt;
     }
 
 }
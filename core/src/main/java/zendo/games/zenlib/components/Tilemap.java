@@ -1,16 +1,155 @@
 package zendo.games.zenlib.components;
 
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.ObjectIntMap;
 import lombok.var;
 import zendo.games.zenlib.ecs.Component;
+import zendo.games.zenlib.utils.Calc;
+import zendo.games.zenlib.utils.RectI;
 
+/**
+ * Sparse, chunked grid of tiles
+ *
+ * Cells hold compact tile ids that index into a tileset table of TextureRegions, id 0 is an empty cell.
+ * Cells are stored in square chunks that are only allocated once something is placed in them,
+ * so large mostly empty maps cost memory in proportion to their contents rather than their bounds.
+ *
+ * Each chunk's vertices are baked relative to the map's origin and uploaded once into a static Mesh per texture,
+ * which is drawn with the batch's shader and the map's position applied through the transform.
+ * When the batch color isn't white the tiles are drawn through the batch instead, so they pick up the tint.
+ */
 public class Tilemap extends Component {
 
+    // cells are stored and baked into vertex data in square chunks of this many cells per side
+    public static final int chunk_size = 16;
+
+    // number of floats per tile in SpriteBatch's vertex layout: 4 vertices of (x, y, color, u, v)
+    public static final int floats_per_tile = 20;
+    public static final int vertices_per_tile = 4;
+    public static final int indices_per_tile = 6;
+
+    public static final int empty = 0;
+    public static final int max_tile_id = 0xFFFF;
+
+    public interface TileVisitor {
+        void visit(int x, int y, int id);
+    }
+
+    /**
+     * Tile ids for one chunk of cells, and prebuilt SpriteBatch vertices for drawing them,
+     * one vertex array and mesh per texture used by the chunk
+     */
+    public static class Chunk {
+        public final short[] tiles = new short[chunk_size * chunk_size];
+        public int count = 0;
+
+        public boolean dirty = true;
+        public final Array<Texture> textures = new Array<>();
+        public final Array<FloatArray> vertices = new Array<>();
+
+        // uploaded copies of 'vertices', only created on the render thread
+        boolean uploaded = false;
+        final Array<Mesh> meshes = new Array<>();
+
+        public int getTile(int localX, int localY) {
+            return tiles[localX + localY * chunk_size] & 0xFFFF;
+        }
+
+        void clearVertices() {
+            textures.clear();
+            for (var array : vertices) {
+                array.clear();
+            }
+        }
+
+        FloatArray verticesFor(Texture texture) {
+            int index = textures.indexOf(texture, true);
+            if (index == -1) {
+                index = textures.size;
+                textures.add(texture);
+                if (vertices.size <= index) {
+                    vertices.add(new FloatArray(chunk_size * chunk_size * floats_per_tile));
+                }
+            }
+            return vertices.get(index);
+        }
+
+        void upload() {
+            for (int i = 0; i < textures.size; i++) {
+                if (meshes.size <= i) {
+                    meshes.add(createMesh());
+                }
+                var array = vertices.get(i);
+                meshes.get(i).setVertices(array.items, 0, array.size);
+            }
+            uploaded = true;
+        }
+
+        void disposeMeshes() {
+            for (var mesh : meshes) {
+                mesh.dispose();
+            }
+            meshes.clear();
+            uploaded = false;
+        }
+    }
+
+    private static final int max_tiles_per_mesh = chunk_size * chunk_size;
+    private static short[] quadIndices;
+
+    private static Mesh createMesh() {
+        if (quadIndices == null) {
+            quadIndices = new short[max_tiles_per_mesh * indices_per_tile];
+            for (int i = 0, vertex = 0; i < quadIndices.length; i += indices_per_tile, vertex += vertices_per_tile) {
+                quadIndices[i]     = (short) (vertex);
+                quadIndices[i + 1] = (short) (vertex + 1);
+                quadIndices[i + 2] = (short) (vertex + 2);
+                quadIndices[i + 3] = (short) (vertex + 2);
+                quadIndices[i + 4] = (short) (vertex + 3);
+                quadIndices[i + 5] = (short) (vertex);
+            }
+        }
+        // same attributes as SpriteBatch, so its shader can draw it
+        var mesh = new Mesh(true, max_tiles_per_mesh * vertices_per_tile, quadIndices.length,
+                new VertexAttribute(VertexAttributes.Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE),
+                new VertexAttribute(VertexAttributes.Usage.ColorPacked, 4, ShaderProgram.COLOR_ATTRIBUTE),
+                new VertexAttribute(VertexAttributes.Usage.TextureCoordinates, 2, ShaderProgram.TEXCOORD_ATTRIBUTE + "0"));
+        mesh.setIndices(quadIndices);
+        return mesh;
+    }
+
     private int tileSize;
     private int columns;
     private int rows;
-    private TextureRegion[] grid;
+
+    // tile id -> texture region, and the reverse for setCell(TextureRegion)
+    private Array<TextureRegion> tileset;
+    private ObjectIntMap<TextureRegion> tileIds;
+
+    private IntMap<Chunk> chunks;
+    private int chunkColumns;
+    private int chunkRows;
+
+    // optional world space rectangle to draw, otherwise it's derived from the batch's projection
+    private RectI viewport;
+
+    private static final Matrix4 inverseProjection = new Matrix4();
+    private static final Matrix4 chunkTransform = new Matrix4();
+    private static final Matrix4 batchTransform = new Matrix4();
+    private static final Vector3 corner = new Vector3();
 
     public Tilemap() {
         reset();
@@ -24,7 +163,14 @@ public class Tilemap extends Component {
         this.tileSize = tileSize;
         this.columns  = columns;
         this.rows     = rows;
-        this.grid     = new TextureRegion[columns * rows];
+
+        this.tileset = new Array<>();
+        this.tileset.add(null);
+        this.tileIds = new ObjectIntMap<>();
+
+        this.chunkColumns = (columns + chunk_size - 1) / chunk_size;
+        this.chunkRows    = (rows + chunk_size - 1) / chunk_size;
+        this.chunks       = new IntMap<>();
     }
 
     @Override
@@ -32,38 +178,308 @@ public class Tilemap extends Component {
         super.copyFrom(other);
         if (other instanceof Tilemap) {
             var tilemap = (Tilemap) other;
-            this.tileSize = tilemap.tileSize;
-            this.columns  = tilemap.columns;
-            this.rows     = tilemap.rows;
+            this.tileSize     = tilemap.tileSize;
+            this.columns      = tilemap.columns;
+            this.rows         = tilemap.rows;
+            this.tileset      = tilemap.tileset;
+            this.tileIds      = tilemap.tileIds;
+            this.chunks       = tilemap.chunks;
+            this.chunkColumns = tilemap.chunkColumns;
+            this.chunkRows    = tilemap.chunkRows;
+            this.viewport     = tilemap.viewport;
+            markAllDirty();
         }
     }
 
+    public int tileSize() { return tileSize; }
+    public int columns()  { return columns; }
+    public int rows()     { return rows; }
+
+    /**
+     * Restrict drawing to the tiles overlapping this world space rectangle,
+     * or pass null to use whatever the batch's projection can see
+     */
+    public void setViewport(RectI viewport) {
+        this.viewport = viewport;
+    }
+
+    /**
+     * Register a texture region in the tileset table, or find it if it's already registered
+     *
+     * @return the tile id for the region
+     */
+    public int addTile(TextureRegion region) {
+        if (region == null) {
+            return empty;
+        }
+        var id = tileIds.get(region, -1);
+        if (id == -1) {
+            id = tileset.size;
+            if (id > max_tile_id) {
+                throw new IllegalStateException("Tilemap tileset is full, max tile id is " + max_tile_id);
+            }
+            tileset.add(region);
+            tileIds.put(region, id);
+        }
+        return id;
+    }
+
+    /**
+     * Set the region for the specified tile id, growing the tileset table if needed
+     */
+    public void setTile(int id, TextureRegion region) {
+        assert(id > empty && id <= max_tile_id) : "Tile id out of range";
+        while (tileset.size <= id) {
+            tileset.add(null);
+        }
+        var previous = tileset.get(id);
+        if (previous != null) {
+            tileIds.remove(previous, -1);
+        }
+        tileset.set(id, region);
+        if (region != null) {
+            tileIds.put(region, id);
+        }
+        markAllDirty();
+    }
+
+    public TextureRegion getRegion(int id) {
+        return (id > empty && id < tileset.size) ? tileset.get(id) : null;
+    }
+
     @Override
     public void render(SpriteBatch batch) {
-        for (int x = 0; x < columns; x++) {
-            for (int y = 0; y < rows; y++) {
-                if (grid[x + y * columns] != null) {
-                    batch.draw(grid[x + y * columns],
-                            x * tileSize + entity().position.x,
-                            y * tileSize + entity().position.y,
-                            tileSize, tileSize);
+        if (chunks == null) return;
+
+        // find the visible world rectangle
+        float left, bottom, right, top;
+        if (viewport != null) {
+            left   = viewport.x;
+            bottom = viewport.y;
+            right  = viewport.x + viewport.w;
+            top    = viewport.y + viewport.h;
+        } else {
+            // unproject the corners of normalized device space
+            inverseProjection.set(batch.getProjectionMatrix()).inv();
+            corner.set(-1, -1, 0).prj(inverseProjection);
+            left = right = corner.x;
+            bottom = top = corner.y;
+            corner.set(1, 1, 0).prj(inverseProjection);
+            left   = Math.min(left, corner.x);
+            right  = Math.max(right, corner.x);
+            bottom = Math.min(bottom, corner.y);
+            top    = Math.max(top, corner.y);
+        }
+
+        // baked vertices are relative to the map, so moving it doesn't mean rebaking
+        var originX = entity().position.x;
+        var originY = entity().position.y;
+
+        // only draw the range of chunks that overlaps it
+        var chunkExtent = (float) (tileSize * chunk_size);
+        int minX = Calc.clampInt((int) Calc.floor  ((left   - originX) / chunkExtent), 0, chunkColumns);
+        int maxX = Calc.clampInt((int) Calc.ceiling((right  - originX) / chunkExtent), 0, chunkColumns);
+        int minY = Calc.clampInt((int) Calc.floor  ((bottom - originY) / chunkExtent), 0, chunkRows);
+        int maxY = Calc.clampInt((int) Calc.ceiling((top    - originY) / chunkExtent), 0, chunkRows);
+
+        if (minX >= maxX || minY >= maxY) return;
+
+        // baked tiles are white, so tinted maps go through the batch one tile at a time
+        if (batch.getPackedColor() != Color.WHITE_FLOAT_BITS) {
+            // note - unresolved ids have no region yet, they're skipped like they are when baking
+            forEachTile(minX * chunk_size, minY * chunk_size, (maxX - minX) * chunk_size, (maxY - minY) * chunk_size, (x, y, id) -> {
+                var region = getRegion(id);
+                if (region == null) return;
+                batch.draw(region, originX + x * tileSize, originY + y * tileSize, tileSize, tileSize);
+            });
+            return;
+        }
+
+        // draw the meshes with the batch's shader, which stays bound after a flush,
+        // offset to the map's origin, then put the batch's own transform back
+        batch.flush();
+        var shader = batch.getShader();
+        batchTransform.set(batch.getProjectionMatrix()).mul(batch.getTransformMatrix());
+        chunkTransform.set(batchTransform).translate(originX, originY, 0);
+        shader.setUniformMatrix("u_projTrans", chunkTransform);
+
+        for (int y = minY; y < maxY; y++) {
+            for (int x = minX; x < maxX; x++) {
+                var chunk = chunks.get(x + y * chunkColumns);
+                if (chunk == null) continue;
+
+                if (chunk.dirty) {
+                    buildChunk(x, y, chunk);
+                }
+                if (!chunk.uploaded) {
+                    chunk.upload();
+                }
+
+                for (int i = 0; i < chunk.textures.size; i++) {
+                    var tiles = chunk.vertices.get(i).size / floats_per_tile;
+                    chunk.textures.get(i).bind();
+                    chunk.meshes.get(i).render(shader, GL20.GL_TRIANGLES, 0, tiles * indices_per_tile);
                 }
             }
         }
+
+        // note - the batch binds its own texture again on its next flush
+        shader.setUniformMatrix("u_projTrans", batchTransform);
     }
 
-    public void setCell(int x, int y, TextureRegion texture) {
+    @Override
+    public void destroyed() {
+        // note - chunks are shared with the template this was copied from, which isn't drawn
+        if (chunks == null) return;
+        for (var chunk : chunks.values()) {
+            chunk.disposeMeshes();
+        }
+    }
+
+    /**
+     * Rebuild the vertex data for the chunk at (chunkX, chunkY), in chunk units,
+     * relative to the map's origin. Doesn't touch GL, the meshes are uploaded the next time the chunk is drawn.
+     * note - baked tiles are always white, the batch color is applied by drawing through the batch instead
+     */
+    public void buildChunk(int chunkX, int chunkY, Chunk chunk) {
+        chunk.clearVertices();
+
+        var color = Color.WHITE_FLOAT_BITS;
+        var startX = chunkX * chunk_size;
+        var startY = chunkY * chunk_size;
+        var endX = Math.min(startX + chunk_size, columns);
+        var endY = Math.min(startY + chunk_size, rows);
+
+        for (int y = startY; y < endY; y++) {
+            for (int x = startX; x < endX; x++) {
+                var region = getRegion(chunk.getTile(x - startX, y - startY));
+                if (region == null) continue;
+
+                float x1 = x * tileSize;
+                float y1 = y * tileSize;
+                float x2 = x1 + tileSize;
+                float y2 = y1 + tileSize;
+
+                // same corner order and texture coordinates as SpriteBatch.draw(TextureRegion, ...)
+                float u  = region.getU();
+                float v  = region.getV2();
+                float u2 = region.getU2();
+                float v2 = region.getV();
+
+                var vertices = chunk.verticesFor(region.getTexture());
+                vertices.add(x1); vertices.add(y1); vertices.add(color); vertices.add(u);  vertices.add(v);
+                vertices.add(x1); vertices.add(y2); vertices.add(color); vertices.add(u);  vertices.add(v2);
+                vertices.add(x2); vertices.add(y2); vertices.add(color); vertices.add(u2); vertices.add(v2);
+                vertices.add(x2); vertices.add(y1); vertices.add(color); vertices.add(u2); vertices.add(v);
+            }
+        }
+
+        chunk.dirty = false;
+        chunk.uploaded = false;
+    }
+
+    /**
+     * @return the chunk at (chunkX, chunkY) in chunk units, or null if nothing has been placed in it
+     */
+    public Chunk getChunk(int chunkX, int chunkY) {
+        assert(chunkX >= 0 && chunkY >= 0 && chunkX < chunkColumns && chunkY < chunkRows) : "Chunk indices out of bounds";
+        return chunks.get(chunkX + chunkY * chunkColumns);
+    }
+
+    public int chunkCount() {
+        return chunks.size;
+    }
+
+    public int getTile(int x, int y) {
+        assert(x >= 0 && y >= 0 && x < columns && y < rows) : "Tilemap indices out of bounds";
+        var chunk = chunks.get((x / chunk_size) + (y / chunk_size) * chunkColumns);
+        return (chunk == null) ? empty : chunk.getTile(x % chunk_size, y % chunk_size);
+    }
+
+    public TextureRegion getCell(int x, int y) {
+        return getRegion(getTile(x, y));
+    }
+
+    public void setTile(int x, int y, int id) {
         assert(x >= 0 && y >= 0 && x < columns && y < rows) : "Tilemap indices out of bounds";
-        grid[x + y * columns] = texture;
+        assert(id >= empty && id <= max_tile_id) : "Tile id out of range";
+
+        var key = (x / chunk_size) + (y / chunk_size) * chunkColumns;
+        var chunk = chunks.get(key);
+        if (chunk == null) {
+            // nothing to clear in a chunk that doesn't exist
+            if (id == empty) return;
+
+            chunk = new Chunk();
+            chunks.put(key, chunk);
+        }
+
+        var index = (x % chunk_size) + (y % chunk_size) * chunk_size;
+        var previous = chunk.tiles[index] & 0xFFFF;
+        if (previous == id) return;
+
+        chunk.tiles[index] = (short) id;
+        chunk.dirty = true;
+        if (previous == empty) chunk.count++;
+        if (id == empty)       chunk.count--;
+
+        // release chunks that have become empty, along with their meshes
+        if (chunk.count == 0) {
+            chunk.disposeMeshes();
+            chunks.remove(key);
+        }
+    }
+
+    public void setCell(int x, int y, TextureRegion texture) {
+        setTile(x, y, addTile(texture));
     }
 
     public void setCells(int x, int y, int w, int h, TextureRegion texture) {
-        assert(x >= 0 && y >= 0 && x + w < columns && y + h < rows) : "Tilemap indices out of bounds";
+        assert(x >= 0 && y >= 0 && x + w <= columns && y + h <= rows) : "Tilemap indices out of bounds";
+        var id = addTile(texture);
         for (int ix = x; ix < x + w; ix++) {
             for (int iy = y; iy < y + h; iy++) {
-                grid[x + y * columns] = texture;
+                setTile(ix, iy, id);
             }
         }
     }
 
+    /**
+     * Visit every non-empty cell in the specified region of cells, skipping chunks that are empty
+     */
+    public void forEachTile(int x, int y, int w, int h, TileVisitor visitor) {
+        int left   = Calc.clampInt(x, 0, columns);
+        int right  = Calc.clampInt(x + w, 0, columns);
+        int bottom = Calc.clampInt(y, 0, rows);
+        int top    = Calc.clampInt(y + h, 0, rows);
+        if (left >= right || bottom >= top) return;
+
+        for (int cy = bottom / chunk_size; cy <= (top - 1) / chunk_size; cy++) {
+            for (int cx = left / chunk_size; cx <= (right - 1) / chunk_size; cx++) {
+                var chunk = chunks.get(cx + cy * chunkColumns);
+                if (chunk == null) continue;
+
+                var startX = Math.max(left, cx * chunk_size);
+                var startY = Math.max(bottom, cy * chunk_size);
+                var endX = Math.min(right, (cx + 1) * chunk_size);
+                var endY = Math.min(top, (cy + 1) * chunk_size);
+                for (int iy = startY; iy < endY; iy++) {
+                    for (int ix = startX; ix < endX; ix++) {
+                        var id = chunk.getTile(ix - cx * chunk_size, iy - cy * chunk_size);
+                        if (id != empty) {
+                            visitor.visit(ix, iy, id);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void markAllDirty() {
+        if (chunks == null) return;
+        for (var chunk : chunks.values()) {
+            chunk.dirty = true;
+        }
+    }
+
 }
@@ -5,4 +5,5 @@ public class Config {
     public static final int window_height = 720;
     public static final int framebuffer_width = 320;
     public static final int framebuffer_height = 180;
+    public static final long texture_budget_bytes = 64L * 1024 * 1024;
 }
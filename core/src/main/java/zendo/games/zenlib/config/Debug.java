@@ -11,4 +11,7 @@ public class Debug {
     public static boolean draw_origin = false;
 
     public static boolean output_aseprite_atlas_as_png = false;
+
+    // reuse the baked sprite atlas in 'cache/sprites' when the aseprite sources haven't changed
+    public static boolean use_sprite_cache = true;
 }
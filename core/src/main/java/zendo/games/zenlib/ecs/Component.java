@@ -15,6 +15,9 @@ public abstract class Component extends ListNode<Component> {
     public boolean active;
     public boolean visible;
 
+    // set by the world when the component is added, until awake() is called at the start of the next tick
+    boolean pendingAwake;
+
     public Component() {
         reset();
     }
@@ -63,6 +66,10 @@ public abstract class Component extends ListNode<Component> {
         return entity.get(clazz);
     }
 
+    /**
+     * Called once at the start of the first tick after the component is added,
+     * by which point the rest of the components its entity was built with have been added too
+     */
     public void awake() {}
     public void update(float dt) {}
     public void render(SpriteBatch batch) {}
@@ -14,6 +14,10 @@ public class Entity extends ListNode<Entity> {
     public boolean active;
     public boolean visible;
 
+    // bumped each time the entity is destroyed, entities are reused
+    // so anything holding on to one can compare this to tell whether it's still the same entity
+    public int generation;
+
     public Entity() {
         this.components = new ArrayList<>();
         reset();
@@ -48,6 +48,8 @@ public class World {
     private Pool<Component>[] componentsCache;
     private Pool<Component>[] componentsAlive;
     private List<Component> componentsVisible;
+    private List<Component> componentsAwaking;
+    private List<WorldSystem> systems;
 
     public World() {
         entitiesCache = new Pool<>();
@@ -55,6 +57,8 @@ public class World {
         componentsCache = new Pool[max_component_types];
         componentsAlive = new Pool[max_component_types];
         componentsVisible = new ArrayList<>();
+        componentsAwaking = new ArrayList<>();
+        systems = new ArrayList<>();
     }
 
     public Entity firstEntity() {
@@ -65,13 +69,40 @@ public class World {
         return entitiesAlive.last;
     }
 
+    /**
+     * Add a system that runs every tick, systems run in the order they were added
+     */
+    public <T extends WorldSystem> T addSystem(T system) {
+        systems.add(system);
+        return system;
+    }
+
+    /**
+     * @return the first system of the specified type, or null if there isn't one
+     */
+    public <T extends WorldSystem> T system(Class<T> clazz) {
+        for (int i = 0; i < systems.size(); i++) {
+            var system = systems.get(i);
+            if (clazz.isInstance(system)) {
+                return clazz.cast(system);
+            }
+        }
+        return null;
+    }
+
     public <T extends Component> T first(Class<T> clazz) {
         int type = Component.Types.id(clazz);
+        if (componentsAlive[type] == null) {
+            return null;
+        }
         return clazz.cast(componentsAlive[type].first);
     }
 
     public <T extends Component> T last(Class<T> clazz) {
         int type = Component.Types.id(clazz);
+        if (componentsAlive[type] == null) {
+            return null;
+        }
         return clazz.cast(componentsAlive[type].last);
     }
 
@@ -115,6 +146,14 @@ public class World {
         // add it to the entity
         entity.components.add(instance);
 
+        // wake it up at the start of the next tick, once the rest of the entity's components have been added
+        instance.pendingAwake = true;
+        componentsAwaking.add(instance);
+
+        for (int i = 0; i < systems.size(); i++) {
+            systems.get(i).added(instance);
+        }
+
         return instance;
     }
 
@@ -155,6 +194,7 @@ public class World {
             entitiesCache.insert(entity);
 
             entity.world = null;
+            entity.generation++;
         }
     }
 
@@ -163,6 +203,7 @@ public class World {
             var type = component.type;
 
             // mark destroyed
+            component.pendingAwake = false;
             component.destroyed();
 
             // remove from entity
@@ -187,10 +228,28 @@ public class World {
             destroyEntity(entity);
             entity = next;
         }
+        componentsAwaking.clear();
     }
 
     public void update(float dt) {
+        // wake components that were added since last tick
+        // note - awake() might add more components, they'll be woken up too
+        for (int i = 0; i < componentsAwaking.size(); i++) {
+            var component = componentsAwaking.get(i);
+            if (component.pendingAwake) {
+                component.pendingAwake = false;
+                component.awake();
+            }
+        }
+        componentsAwaking.clear();
+
+        for (int i = 0; i < systems.size(); i++) {
+            systems.get(i).preUpdate(dt);
+        }
+
         for (int i = 0; i < Component.Types.count(); i++) {
+            if (componentsAlive[i] == null) continue;
+
             var component = componentsAlive[i].first;
             while (component != null) {
                 var next = component.next();
@@ -200,6 +259,10 @@ public class World {
                 component = next;
             }
         }
+
+        for (int i = 0; i < systems.size(); i++) {
+            systems.get(i).postUpdate(dt);
+        }
     }
 
     public void render(SpriteBatch batch) {
@@ -212,6 +275,8 @@ public class World {
 
         // assemble list
         for (int i = 0; i < Component.Types.count(); i++) {
+            if (componentsAlive[i] == null) continue;
+
             var component = componentsAlive[i].first;
             while (component != null) {
                 if (component.visible && component.entity.visible) {
@@ -0,0 +1,24 @@
+package zendo.games.zenlib.ecs;
+
+/**
+ * A pass over the whole world that runs once per tick, around the component updates,
+ * for things like collision detection or batched movement that work on every component of a type at once
+ */
+public interface WorldSystem {
+
+    /**
+     * Called at the start of the tick, before any component updates
+     */
+    default void preUpdate(float dt) {}
+
+    /**
+     * Called at the end of the tick, after every component has updated
+     */
+    default void postUpdate(float dt) {}
+
+    /**
+     * Called whenever a component is added to the world, after it's attached to its entity
+     */
+    default void added(Component component) {}
+
+}
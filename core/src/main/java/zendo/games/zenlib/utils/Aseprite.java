@@ -6,16 +6,25 @@ import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.g2d.PixmapPacker;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.LongMap;
+import com.badlogic.gdx.utils.ObjectMap;
 import lombok.var;
 import zendo.games.zenlib.assets.Sprite;
 
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 
@@ -135,6 +144,22 @@ public class Aseprite {
     static final int layer_flag_collapsed        = 1 << 5;
     static final int layer_flag_reference        = 1 << 6;
 
+    static final int header_flag_layer_opacity_valid = 1 << 0;
+
+    // ----------------------------------------------------
+    // blend modes
+    // ----------------------------------------------------
+
+    static final int blend_normal     = 0;
+    static final int blend_multiply   = 1;
+    static final int blend_screen     = 2;
+    static final int blend_darken     = 4;
+    static final int blend_lighten    = 5;
+    static final int blend_difference = 10;
+    static final int blend_exclusion  = 11;
+    static final int blend_addition   = 16;
+    static final int blend_subtract   = 17;
+
 
     // ----------------------------------------------------
     // structs
@@ -151,14 +176,30 @@ public class Aseprite {
         public int x = 0;
         public int y = 0;
         public byte alpha = 0;
+        // note - a linked cel's image is the image of the cel it links to, it's not a copy
         public Pixmap image = null;
         public UserData userdata = null;
+
+        // where the cel's pixel data is in the file, it's decoded after the whole file is parsed
+        int type = 0;
+        int data_offset = 0;
+        int data_length = 0;
+        int image_width = 0;
+        int image_height = 0;
     }
 
     public static class Frame {
         public int duration = 0;
         public Pixmap image = null;
         public List<Cel> cels = null;
+        // frames made only of links to another frame's cels share that frame's image
+        public int linked_frame_index = -1;
+        // bounds of the opaque pixels in image (y-down), and a hash of those pixels
+        public int trim_x = 0;
+        public int trim_y = 0;
+        public int trim_w = 0;
+        public int trim_h = 0;
+        public long hash = 0;
     }
 
     public static class Layer {
@@ -208,6 +249,20 @@ public class Aseprite {
 
     private UserData lastUserdata = null;
 
+    private int header_flags = 0;
+
+    // file contents, only held between parsing and decoding cels
+    private byte[] bytes = null;
+
+    // indexed mode palette lookups in rgba8888, built before decoding cels
+    // background layers are opaque, so they use the palette as-is without the transparent index
+    private int transparent_index = 0;
+    private int[] palette_lut = null;
+    private int[] palette_lut_background = null;
+
+    // pool used to decode files, cels and frames in parallel
+    private static final ForkJoinPool pool = ForkJoinPool.commonPool();
+
     // ----------------------------------------------------
     // constructors
     // ----------------------------------------------------
@@ -218,6 +273,7 @@ public class Aseprite {
 
     public Aseprite(FileHandle file) {
         parse(file);
+        decode();
     }
 
     // ----------------------------------------------------
@@ -238,6 +294,83 @@ public class Aseprite {
             public RectI hitbox = null;
             public int region_index;
             public float duration;
+            // position of the trimmed region in the untrimmed frame, y-up
+            public int offset_x;
+            public int offset_y;
+        }
+    }
+
+    /**
+     * Frames that have been packed, by pixel hash, so that identical frames
+     * across animations and sprites are only packed once
+     * note - only valid for the packer it's used with
+     */
+    public static class PackedFrames {
+        private static class PackedFrame {
+            String packed_name;
+            String region_name;
+            int region_index;
+            int width;
+            int height;
+        }
+
+        private final LongMap<Array<PackedFrame>> frames = new LongMap<>();
+        // frames that share an image, like linked frames or a frame used by several tags, are found without hashing
+        private final ObjectMap<Pixmap, PackedFrame> images = new ObjectMap<>();
+        public int packed;
+        public int shared;
+
+        /**
+         * @return a packed frame with the same pixels as the trimmed frame, or null if there isn't one
+         */
+        private PackedFrame find(PixmapPacker packer, Frame frame) {
+            var same_image = images.get(frame.image);
+            if (same_image != null) return same_image;
+
+            var candidates = frames.get(frame.hash);
+            if (candidates == null) return null;
+
+            for (var candidate : candidates) {
+                if (candidate.width != frame.trim_w || candidate.height != frame.trim_h) continue;
+
+                // confirm it's not a hash collision against the pixels that were packed
+                var page = packer.getPage(candidate.packed_name);
+                var rect = packer.getRect(candidate.packed_name);
+                if (page == null || rect == null) continue;
+                if (same_pixels(frame, page.getPixmap(), (int) rect.x, (int) rect.y)) {
+                    return candidate;
+                }
+            }
+            return null;
+        }
+
+        private void add(Frame frame, String packed_name, String region_name, int region_index) {
+            var packed_frame = new PackedFrame();
+            packed_frame.packed_name = packed_name;
+            packed_frame.region_name = region_name;
+            packed_frame.region_index = region_index;
+            packed_frame.width = frame.trim_w;
+            packed_frame.height = frame.trim_h;
+
+            images.put(frame.image, packed_frame);
+
+            var candidates = frames.get(frame.hash);
+            if (candidates == null) {
+                candidates = new Array<>(1);
+                frames.put(frame.hash, candidates);
+            }
+            candidates.add(packed_frame);
+        }
+
+        private static boolean same_pixels(Frame frame, Pixmap page, int page_x, int page_y) {
+            for (int y = 0; y < frame.trim_h; y++) {
+                for (int x = 0; x < frame.trim_w; x++) {
+                    if (frame.image.getPixel(frame.trim_x + x, frame.trim_y + y) != page.getPixel(page_x + x, page_y + y)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
         }
     }
 
@@ -253,6 +386,29 @@ public class Aseprite {
      *         and references for how to find the TextureRegions packed by the PixmapPacker
      */
     public static SpriteInfo loadAndPack(PixmapPacker packer, String path) {
+        return pack(packer, load(path));
+    }
+
+    /**
+     * Load and decode several Aseprite files in parallel, ready to be packed with {@link #pack(PixmapPacker, SpriteInfo)}
+     *
+     * @return SpriteInfo objects in the same order as the specified paths
+     */
+    public static SpriteInfo[] loadAll(String... paths) {
+        var infos = new SpriteInfo[paths.length];
+        parallel(paths.length, (i) -> infos[i] = load(paths[i]));
+        return infos;
+    }
+
+    /**
+     * Load and decode the Aseprite file specified by 'path' and collect its animation info,
+     * without packing anything, so it's safe to call from any thread
+     *
+     * @param path the path of the Aseprite file to load
+     *
+     * @return a SpriteInfo object populated with details of the loaded Aseprite file
+     */
+    public static SpriteInfo load(String path) {
         var info = new SpriteInfo();
         {
             info.path = path;
@@ -275,31 +431,97 @@ public class Aseprite {
                     //  while the string used to pack a region into the atlas _must_ include the frame index
                     var frame = info.aseprite.frames.get(frame_index);
                     var frame_region_name = info.name + "-" + anim_tag.name;
-                    var frame_region_name_w_index = frame_region_name + "_" + i;
-                    var frame_duration = frame.duration;
-
-                    // pack the frame image into the texture atlas
-                    packer.pack(frame_region_name_w_index, frame.image);
 
                     // save the info needed to build the sprite's animation for this tag/frame
                     var anim_frame_infos = info.anim_frame_infos.get(anim_tag.name);
                     anim_frame_infos[i] = new SpriteInfo.AnimFrameInfo();
                     anim_frame_infos[i].region_name = frame_region_name;
                     anim_frame_infos[i].region_index = i;
-                    anim_frame_infos[i].duration = frame_duration;
+                    anim_frame_infos[i].duration = frame.duration;
                     anim_frame_infos[i].hitbox = extract_hitbox_data(info, frame);
                 }
             }
+        }
+        return info;
+    }
+
+    /**
+     * Pack the animation frames of a loaded Aseprite file with the specified 'packer'
+     * and dispose of its Pixmap data once it's packed
+     * note - PixmapPacker isn't thread safe, so this is the serial part of loading
+     *
+     * @param packer a configured PixmapPacker used to pack animation frame data
+     * @param info a SpriteInfo from {@link #load(String)}
+     *
+     * @return the same SpriteInfo, with references for how to find the TextureRegions packed by the PixmapPacker
+     */
+    public static SpriteInfo pack(PixmapPacker packer, SpriteInfo info) {
+        return pack(packer, info, new PackedFrames());
+    }
+
+    /**
+     * Pack the trimmed animation frames of a loaded Aseprite file, sharing regions with identical frames
+     * that were already packed, then dispose of its Pixmap data
+     *
+     * @param packed_frames frames already packed with this packer, pass the same one when packing several files together
+     */
+    public static SpriteInfo pack(PixmapPacker packer, SpriteInfo info, PackedFrames packed_frames) {
+        for (var anim_tag : info.aseprite.tags) {
+            var num_frames = anim_tag.to - anim_tag.from + 1;
+            var anim_frame_infos = info.anim_frame_infos.get(anim_tag.name);
+            for (int i = 0; i < num_frames; i++) {
+                var frame = info.aseprite.frames.get(anim_tag.from + i);
+                var frame_info = anim_frame_infos[i];
+                var frame_region_name_w_index = info.name + "-" + anim_tag.name + "_" + i;
+
+                // trimmed regions are drawn offset by the transparent border that was removed
+                frame_info.offset_x = frame.trim_x;
+                frame_info.offset_y = info.aseprite.height - (frame.trim_y + frame.trim_h);
+
+                // reuse the region of an identical frame if there is one
+                var existing = packed_frames.find(packer, frame);
+                if (existing != null) {
+                    frame_info.region_name = existing.region_name;
+                    frame_info.region_index = existing.region_index;
+                    packed_frames.shared++;
+                    continue;
+                }
+
+                // pack the trimmed frame image into the texture atlas
+                var trimmed = new Pixmap(frame.trim_w, frame.trim_h, Pixmap.Format.RGBA8888);
+                trimmed.setBlending(Pixmap.Blending.None);
+                trimmed.drawPixmap(frame.image, 0, 0, frame.trim_x, frame.trim_y, frame.trim_w, frame.trim_h);
+                packer.pack(frame_region_name_w_index, trimmed);
+                trimmed.dispose();
+
+                packed_frames.add(frame, frame_region_name_w_index, frame_info.region_name, frame_info.region_index);
+                packed_frames.packed++;
+            }
+        }
 
-            // dispose Aseprite Pixmap images since they are now packed into the texture atlas
-            for (var frame : info.aseprite.frames) {
+        // dispose Aseprite Pixmap images since they are now packed into the texture atlas
+        dispose(info);
+        return info;
+    }
+
+    /**
+     * Dispose of the Pixmap data of a loaded Aseprite file,
+     * for files that were decoded but will never be packed
+     */
+    public static void dispose(SpriteInfo info) {
+        // note - linked cels and frames share images with their sources, so only the sources are disposed
+        for (var frame : info.aseprite.frames) {
+            if (frame.cels != null) {
                 for (var cel : frame.cels) {
-                    cel.image.dispose();
+                    if (cel.image != null && cel.type != 1) {
+                        cel.image.dispose();
+                    }
                 }
+            }
+            if (frame.image != null && frame.linked_frame_index < 0) {
                 frame.image.dispose();
             }
         }
-        return info;
     }
 
     /**
@@ -352,7 +574,8 @@ public class Aseprite {
         for (var cel : frame.cels) {
             if (cel.layer_index == hitbox_layer_index) {
                 // check whether there are any non-transparent pixels in this cel
-                if (cel.image.getWidth() == 0 || cel.image.getHeight() == 0) {
+                // note - linked cels use their source cel's image, which is null if the link couldn't be resolved
+                if (cel.image == null || cel.image.getWidth() == 0 || cel.image.getHeight() == 0) {
                     return null;
                 }
 
@@ -412,11 +635,11 @@ public class Aseprite {
                     var frame_region = atlas.findRegion(frame_info.region_name, frame_info.region_index);
                     var frame_duration = anim_frame_info[i].duration;
                     anim_frames[i] = new Sprite.Frame(frame_region, frame_duration / 1000f);
+                    anim_frames[i].offsetX = frame_info.offset_x;
+                    anim_frames[i].offsetY = frame_info.offset_y;
 
-                    // TODO: may need to flip-y on this depending how we load it in loadAndPack()
-                    if (frame_info.hitbox != null) {
-                        anim_frames[i].hitbox = frame_info.hitbox;
-                    }
+                    // note - extract_hitbox_data already flipped the hitbox to y-up around the pivot
+                    anim_frames[i].hitbox = frame_info.hitbox;
                 }
 
                 // build animation from frames
@@ -440,7 +663,8 @@ public class Aseprite {
         }
 
         // create byte buffer from file contents and set endianness for .ase files
-        var bytes = file.readBytes();
+        // note - the bytes are kept until decode() so cel pixel data can be read from them in parallel
+        bytes = file.readBytes();
         var stream = ByteBuffer.wrap(bytes);
         stream.order(ByteOrder.LITTLE_ENDIAN);
 
@@ -464,11 +688,11 @@ public class Aseprite {
             mode = Modes.fromValue(stream.getShort() / 8);
 
             // don't care about other info, extract and drop on the floor
-            stream.getInt();   // flags
+            header_flags = stream.getInt();
             stream.getShort(); // speed (deprecated)
             stream.getInt();   // should be 0
             stream.getInt();   // should be 0
-            stream.get();      // palette entry
+            transparent_index = stream.get() & 0xFF; // palette entry that's transparent in indexed sprites
             stream.position(stream.position() + 3); // skip reserved bytes
             stream.getShort(); // number of colors (0 means 256 for old sprites)
             stream.get();      // pixel width
@@ -510,9 +734,6 @@ public class Aseprite {
                 }
             }
 
-            // create the frame image
-            frames.get(i).image = new Pixmap(width, height, Pixmap.Format.RGBA8888);
-
             // frame chunks
             for (int j = 0; j < chunks; j++) {
                 var chunkStart = stream.position();
@@ -539,6 +760,425 @@ public class Aseprite {
         Gdx.app.log(tag, "File loaded: " + file.path());
     }
 
+    /**
+     * Decode the pixel data of every cel, then composite cels into frame images.
+     * Cels are independent of each other, as are frames once their cels are decoded,
+     * so both stages are split across the pool.
+     */
+    private void decode() {
+        var cels = new ArrayList<Cel>();
+        for (var frame : frames) {
+            if (frame.cels == null) continue;
+            for (var cel : frame.cels) {
+                if (cel.type == 0 || cel.type == 2) {
+                    cels.add(cel);
+                }
+            }
+        }
+
+        if (mode == Modes.indexed) {
+            build_palette_luts();
+        }
+
+        parallel(cels.size(), (i) -> decode_cel(cels.get(i)));
+        bytes = null;
+
+        // point linked cels at their source images, and find frames that are copies of other frames
+        resolve_links();
+
+        var rendered = new ArrayList<Frame>();
+        for (var frame : frames) {
+            if (frame.linked_frame_index < 0) {
+                rendered.add(frame);
+            }
+        }
+        parallel(rendered.size(), (i) -> {
+            render_frame(rendered.get(i));
+            trim_frame(rendered.get(i));
+        });
+
+        // linked frames share their source frame's image instead of compositing the same cels again
+        for (var frame : frames) {
+            if (frame.linked_frame_index < 0) continue;
+            var source = frames.get(frame.linked_frame_index);
+            frame.image  = source.image;
+            frame.trim_x = source.trim_x;
+            frame.trim_y = source.trim_y;
+            frame.trim_w = source.trim_w;
+            frame.trim_h = source.trim_h;
+            frame.hash   = source.hash;
+        }
+    }
+
+    private void decode_cel(Cel cel) {
+        var width  = cel.image_width;
+        var height = cel.image_height;
+        var num_pixels = width * height;
+        var num_image_bytes = num_pixels * mode.value;
+
+        // create the backing pixmap
+        cel.image = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+
+        // find the cel's pixels in the file's mode
+        byte[] src;
+        int src_offset;
+        Decoder decoder = null;
+        try {
+            // RAW - read straight out of the file contents
+            if (cel.type == 0) {
+                src = bytes;
+                src_offset = cel.data_offset;
+            }
+            // DEFLATE - inflate straight from the file contents into a reused scratch buffer
+            else {
+                decoder = obtainDecoder();
+                src = decoder.inflate(bytes, cel.data_offset, cel.data_length, num_image_bytes);
+                src_offset = 0;
+            }
+
+            // update the pixels in the cel's pixmap, converting to rgba if needed
+            var pixels = cel.image.getPixels();
+            if (mode == Modes.rgba) {
+                pixels.put(src, src_offset, num_image_bytes);
+                ((Buffer) pixels).position(0);
+            } else {
+                if (decoder == null) {
+                    decoder = obtainDecoder();
+                }
+                var rgba = decoder.pixels(num_pixels);
+                if (mode == Modes.indexed) {
+                    var background = (layers.get(cel.layer_index).flags & layer_flag_backgroun) != 0;
+                    convert_indexed(src, src_offset, rgba, num_pixels, background ? palette_lut_background : palette_lut);
+                } else {
+                    convert_grayscale(src, src_offset, rgba, num_pixels);
+                }
+
+                // note - rgba8888 ints are r,g,b,a from the high byte down, which is the pixmap's byte order when written big endian
+                pixels.duplicate().order(ByteOrder.BIG_ENDIAN).asIntBuffer().put(rgba, 0, num_pixels);
+            }
+        } finally {
+            if (decoder != null) {
+                freeDecoder(decoder);
+            }
+        }
+    }
+
+    private void build_palette_luts() {
+        palette_lut_background = new int[256];
+        for (int i = 0; i < 256 && i < palette.size(); i++) {
+            var color = palette.get(i);
+            if (color != null) {
+                palette_lut_background[i] = Color.rgba8888(color);
+            }
+        }
+
+        palette_lut = palette_lut_background.clone();
+        palette_lut[transparent_index] = 0;
+    }
+
+    /**
+     * Expand 8 bit palette indices into rgba8888 pixels
+     */
+    private static void convert_indexed(byte[] src, int offset, int[] dst, int count, int[] lut) {
+        for (int i = 0; i < count; i++) {
+            dst[i] = lut[src[offset + i] & 0xFF];
+        }
+    }
+
+    /**
+     * Expand 16 bit value + alpha gray pixels into rgba8888 pixels
+     */
+    private static void convert_grayscale(byte[] src, int offset, int[] dst, int count) {
+        for (int i = 0, s = offset; i < count; i++, s += 2) {
+            var value = src[s] & 0xFF;
+            var alpha = src[s + 1] & 0xFF;
+            dst[i] = (value << 24) | (value << 16) | (value << 8) | alpha;
+        }
+    }
+
+    // ----------------------------------------------------
+    // decoders
+    // ----------------------------------------------------
+
+    /**
+     * An Inflater and scratch buffers that are reused across cels rather than allocated per cel.
+     * Idle decoders are pooled across loads, and their native zlib memory is released by {@link #releaseDecoders()}.
+     */
+    static class Decoder {
+        final Inflater inflater = new Inflater();
+        byte[] scratch = new byte[0];
+        int[] pixels = new int[0];
+        // rows of cel and frame pixels for compositing
+        int[] src_row = new int[0];
+        int[] dst_row = new int[0];
+
+        /**
+         * @return a scratch array with room for at least 'count' pixels
+         */
+        int[] pixels(int count) {
+            if (pixels.length < count) {
+                pixels = new int[count];
+            }
+            return pixels;
+        }
+
+        /**
+         * Make sure the compositing rows have room for at least 'count' pixels
+         */
+        void rows(int count) {
+            if (src_row.length < count) {
+                src_row = new int[count];
+                dst_row = new int[count];
+            }
+        }
+
+        /**
+         * @return the scratch buffer, holding exactly 'length' inflated bytes at the start
+         *
+         * note - Inflater only inflates into a ByteBuffer from java 11, and this targets java 8,
+         *        so cels are inflated here and then copied into their Pixmap with one put
+         */
+        byte[] inflate(byte[] input, int offset, int size, int length) {
+            if (scratch.length < length) {
+                scratch = new byte[length];
+            }
+
+            inflater.setInput(input, offset, size);
+            try {
+                var count = 0;
+                while (count < length && !inflater.finished()) {
+                    var inflated = inflater.inflate(scratch, count, length - count);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                    count += inflated;
+                }
+                if (count != length) {
+                    throw new GdxRuntimeException("File is not a valid Aseprite file (truncated cel pixel data)");
+                }
+            } catch (DataFormatException e) {
+                throw new GdxRuntimeException("File is not a valid Aseprite file (unable to inflate cel pixel data for frame)");
+            } finally {
+                inflater.reset();
+            }
+            return scratch;
+        }
+    }
+
+    private static final ConcurrentLinkedQueue<Decoder> decoders = new ConcurrentLinkedQueue<>();
+
+    private static Decoder obtainDecoder() {
+        var decoder = decoders.poll();
+        return (decoder != null) ? decoder : new Decoder();
+    }
+
+    private static void freeDecoder(Decoder decoder) {
+        decoders.offer(decoder);
+    }
+
+    /**
+     * End the pooled decoders, releasing their native zlib memory and scratch buffers.
+     * Call this once nothing else is going to be loaded, like on shutdown,
+     * decoders that are in use at the time aren't affected.
+     */
+    public static void releaseDecoders() {
+        Decoder decoder;
+        while ((decoder = decoders.poll()) != null) {
+            decoder.inflater.end();
+        }
+    }
+
+    /**
+     * Resolve linked cels to the decoded image of the cel they link to, then mark frames whose cels
+     * all link to the same cels of one other frame as copies of that frame
+     */
+    private void resolve_links() {
+        for (var frame : frames) {
+            if (frame.cels == null) continue;
+            for (var cel : frame.cels) {
+                if (cel.type != 1) continue;
+                var source = find_source_cel(cel.linked_frame_index, cel.layer_index);
+                if (source != null) {
+                    cel.image = source.image;
+                } else {
+                    Gdx.app.debug(tag, "Cel on layer " + cel.layer_index + " links to missing frame " + cel.linked_frame_index);
+                }
+            }
+        }
+
+        for (int frame_index = 0; frame_index < frames.size(); frame_index++) {
+            var frame = frames.get(frame_index);
+            if (frame.cels == null || frame.cels.isEmpty()) continue;
+
+            // every cel has to link to the same earlier frame, with nothing that changes how it's drawn
+            var linked_index = frame.cels.get(0).linked_frame_index;
+            if (linked_index < 0 || linked_index >= frame_index) continue;
+
+            var linked = frames.get(linked_index);
+            if (linked.cels == null || linked.cels.size() != frame.cels.size()) continue;
+
+            var is_copy = true;
+            for (var cel : frame.cels) {
+                var linked_cel = find_cel(linked, cel.layer_index);
+                if (cel.type != 1
+                 || cel.linked_frame_index != linked_index
+                 || linked_cel == null
+                 || linked_cel.x != cel.x
+                 || linked_cel.y != cel.y
+                 || linked_cel.alpha != cel.alpha) {
+                    is_copy = false;
+                    break;
+                }
+            }
+            if (!is_copy) continue;
+
+            // links point back to earlier frames, so the linked frame's own link is already resolved
+            frame.linked_frame_index = (linked.linked_frame_index >= 0) ? linked.linked_frame_index : linked_index;
+        }
+    }
+
+    /**
+     * Find the cel with pixel data that a link points to, following chains of links
+     */
+    private Cel find_source_cel(int frame_index, int layer_index) {
+        for (int i = 0; i < frames.size(); i++) {
+            if (frame_index < 0 || frame_index >= frames.size()) return null;
+
+            var cel = find_cel(frames.get(frame_index), layer_index);
+            if (cel == null) return null;
+            if (cel.type != 1) return cel;
+
+            frame_index = cel.linked_frame_index;
+        }
+        return null;
+    }
+
+    private static Cel find_cel(Frame frame, int layer_index) {
+        if (frame.cels == null) return null;
+        for (var cel : frame.cels) {
+            if (cel.layer_index == layer_index) {
+                return cel;
+            }
+        }
+        return null;
+    }
+
+    private void render_frame(Frame frame) {
+        frame.image = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+        if (frame.cels == null) return;
+
+        // composite from the bottom layer up
+        Collections.sort(frame.cels, (a, b) -> Integer.compare(a.layer_index, b.layer_index));
+
+        // note - only the decoder's scratch rows are used here, it's the per thread scratch space
+        var decoder = obtainDecoder();
+        try {
+            for (var cel : frame.cels) {
+                // draw to frame if visible
+                // note - hitbox layers should not get rendered into the frame
+                if (cel.image != null
+                 && (layers.get(cel.layer_index).flags & layer_flag_visible) != 0
+                 && (!layers.get(cel.layer_index).name.equals("hitbox"))) {
+                    render_cel(cel, frame, decoder);
+                }
+            }
+        } finally {
+            freeDecoder(decoder);
+        }
+    }
+
+    /**
+     * Find the bounds of the frame's opaque pixels and hash them, so packing can
+     * drop the transparent border and share identical frames
+     */
+    static void trim_frame(Frame frame) {
+        var image = frame.image;
+        trim_frame(frame, image.getPixels(), image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Trim and hash a frame from its RGBA8888 pixels, laid out in rows top to bottom
+     */
+    static void trim_frame(Frame frame, ByteBuffer pixels, int image_width, int image_height) {
+        int left = image_width, right = -1, top = image_height, bottom = -1;
+        for (int y = 0; y < image_height; y++) {
+            var row = y * image_width * 4;
+            for (int x = 0; x < image_width; x++) {
+                if (pixels.get(row + x * 4 + 3) != 0) {
+                    if (x < left)   left = x;
+                    if (x > right)  right = x;
+                    if (y < top)    top = y;
+                    if (y > bottom) bottom = y;
+                }
+            }
+        }
+
+        // note - a fully transparent frame still needs a region to draw, so it keeps a single pixel
+        if (right < 0) {
+            left = right = top = bottom = 0;
+        }
+
+        frame.trim_x = left;
+        frame.trim_y = top;
+        frame.trim_w = right - left + 1;
+        frame.trim_h = bottom - top + 1;
+
+        // fnv-1a over the size and the trimmed pixels
+        var hash = 0xcbf29ce484222325L;
+        hash = (hash ^ frame.trim_w) * 0x100000001b3L;
+        hash = (hash ^ frame.trim_h) * 0x100000001b3L;
+        for (int y = top; y <= bottom; y++) {
+            var row = (y * image_width + left) * 4;
+            for (int i = 0; i < frame.trim_w * 4; i++) {
+                hash = (hash ^ (pixels.get(row + i) & 0xFF)) * 0x100000001b3L;
+            }
+        }
+        frame.hash = hash;
+    }
+
+    interface ParallelWork {
+        void run(int index);
+    }
+
+    /**
+     * Run work for each index in [0, count) across the pool, returning once it's all done
+     */
+    private static void parallel(int count, ParallelWork work) {
+        if (count == 0) return;
+        if (count == 1) {
+            work.run(0);
+            return;
+        }
+
+        var task = new ParallelTask(work, 0, count);
+        if (ForkJoinTask.inForkJoinPool()) {
+            // already on a pool thread, so fork from here rather than queueing and blocking on it
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+    }
+
+    private static class ParallelTask extends RecursiveAction {
+        final ParallelWork work;
+        final int from;
+        final int to;
+
+        ParallelTask(ParallelWork work, int from, int to) {
+            this.work = work;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                work.run(from);
+            } else {
+                var mid = (from + to) >>> 1;
+                invokeAll(new ParallelTask(work, from, mid), new ParallelTask(work, mid, to));
+            }
+        }
+    }
+
     private void parse_layer(ByteBuffer stream, int frame) {
         var layer = new Layer();
         {
@@ -583,93 +1223,20 @@ public class Aseprite {
             stream.position(stream.position() + 7); // skip reserved bytes
 
             // RAW or DEFLATE
+            // note - pixel data is decoded later by decode_cel(), once the whole file is parsed
             if (cel_type == 0 || cel_type == 2) {
-                var width  = stream.getShort();
-                var height = stream.getShort();
-                var num_image_bytes = width * height * mode.value;
-
-                // create the backing pixmap
-                cel.image = new Pixmap(width, height, Pixmap.Format.RGBA8888);
-                var imageBytes = ByteBuffer.allocate(num_image_bytes);
-
-                // load pixels in rgba format
-                // RAW
-                if (cel_type == 0) {
-                    stream.get(imageBytes.array(), 0, num_image_bytes);
-                }
-                // DEFLATE
-                else {
-                    // try to decode the pixel bytes
-                    try {
-                        // note - in noel's parser he clamps this value at INT32_MAX
-                        //        not sure how the value could get bigger since its the diff of 2 ints
-                        var size = maxPosition - stream.position();
-                        var buffer = new byte[size];
-                        stream.get(buffer, 0, size);
-
-                        // sizeof Color in bytes = 4
-                        var output_length = width * height * 4;
-
-                        var inflater = new Inflater();
-                        inflater.setInput(buffer, 0, size);
-                        inflater.inflate(imageBytes.array(), 0, output_length);
-                    } catch (DataFormatException e) {
-                        throw new GdxRuntimeException("File is not a valid Aseprite file (unable to inflate cel pixel data for frame): " + frameIndex);
-                    }
-                }
-
-                // todo - review these conversions, they're probably not right
-
-                // convert rgba loaded pixels to another format if mode is not rgba
-                // note - we work in-place to save having to store stuff in a buffer
-                if (mode == Modes.grayscale) {
-                    Gdx.app.log(tag, "converting cel pixels to grayscale not yet implemented");
-//                    var src = cel.image.getPixels().array();
-//                    var dst = cel.image.getPixels().array();
-//
-//                    for (int d = width * height - 1, s = (width * height - 1) * 2; d >= 0; d--, s -= 2) {
-//                        dst[d] = new Color(src[s], src[s], src[s], src[s + 1]);
-//                    }
-                }
-                else if (mode == Modes.indexed) {
-                    Gdx.app.log(tag, "possibly broken: converting cel pixels to indexed colors....");
-                    var src = imageBytes;
-                    var dst = imageBytes;
-                    for (int i = src.array().length - 1; i >= 0; i -= 4) {
-                        // TODO: double check byte ordering, this is a bit oof
-                        // convert source bytes into integer palette index
-                        var srcBytes = new byte[] {src.get(i), src.get(i-1), src.get(i-2), src.get(i-3)};
-                        var palette_index = ByteBuffer.wrap(srcBytes).getInt();
-
-                        // retrieve the indexed color from the previously loaded palette
-                        var indexed_color = palette.get(palette_index);
-
-                        // convert indexed color to int bytes and write back to dst
-                        var result = ByteBuffer.allocate(4).putInt(indexed_color.toIntBits()).array();
-                        dst.put(i - 0, result[0]);
-                        dst.put(i - 1, result[1]);
-                        dst.put(i - 2, result[2]);
-                        dst.put(i - 3, result[3]);
-                    }
-                }
-
-                // update the pixels in the cel's pixmap
-                cel.image.getPixels().put(imageBytes);
+                cel.type = cel_type;
+                cel.image_width  = stream.getShort();
+                cel.image_height = stream.getShort();
+                cel.data_offset  = stream.position();
+                cel.data_length  = maxPosition - stream.position();
             }
             // REFERENCE (this cel directly references a previous cel)
             else if (cel_type == 1) {
+                cel.type = cel_type;
                 cel.linked_frame_index = stream.getShort();
             }
 
-            // draw to frame if visible
-            // note:
-            //  render_cel doesn't properly composite multiple cels per frame (yet)
-            //  also, hitbox layers should not get rendered into the frame
-            if ((layers.get(cel.layer_index).flags & layer_flag_visible) != 0
-             && (!layers.get(cel.layer_index).name.equals("hitbox"))) {
-                render_cel(cel, frame);
-            }
-
             // update userdata
             cel.userdata = new UserData();
             cel.userdata.color = Color.WHITE.cpy();
@@ -803,12 +1370,139 @@ public class Aseprite {
         }
     }
 
-    // note - since a frame could contain multiple cells
-    //        this method should composite the specified cell
-    //        into the existing frame image rather than
-    //        just overwriting the existing frame image
-    private void render_cel(Cel cel, Frame frame) {
-        frame.image.drawPixmap(cel.image, cel.x, cel.y);
+    /**
+     * Composite the specified cel into its frame's image,
+     * applying cel and layer opacity and the layer's blend mode the way Aseprite does
+     */
+    private void render_cel(Cel cel, Frame frame, Decoder decoder) {
+        var layer = layers.get(cel.layer_index);
+
+        var opacity = cel.alpha & 0xFF;
+        if ((header_flags & header_flag_layer_opacity_valid) != 0) {
+            opacity = mul_un8(opacity, layer.alpha & 0xFF);
+        }
+        if (opacity == 0) return;
+
+        // clip the cel to the frame
+        var cel_w = cel.image.getWidth();
+        var cel_h = cel.image.getHeight();
+        var left   = Math.max(0, cel.x);
+        var top    = Math.max(0, cel.y);
+        var right  = Math.min(width, cel.x + cel_w);
+        var bottom = Math.min(height, cel.y + cel_h);
+        if (left >= right || top >= bottom) return;
+
+        var blendmode = layer.blendmode;
+        if (!is_supported_blend(blendmode)) {
+            Gdx.app.debug(tag, "Unsupported blend mode " + blendmode + " on layer '" + layer.name + "', using normal");
+            blendmode = blend_normal;
+        }
+
+        // work a row at a time on rgba8888 ints straight from the pixel buffers
+        var src = cel.image.getPixels().duplicate().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+        var dst = frame.image.getPixels().duplicate().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+        var span = right - left;
+        decoder.rows(span);
+        var src_row = decoder.src_row;
+        var dst_row = decoder.dst_row;
+        for (int y = top; y < bottom; y++) {
+            ((Buffer) src).position((y - cel.y) * cel_w + (left - cel.x));
+            src.get(src_row, 0, span);
+            ((Buffer) dst).position(y * width + left);
+            dst.get(dst_row, 0, span);
+
+            composite_row(src_row, dst_row, span, opacity, blendmode);
+
+            ((Buffer) dst).position(y * width + left);
+            dst.put(dst_row, 0, span);
+        }
+    }
+
+    private static boolean is_supported_blend(int blendmode) {
+        switch (blendmode) {
+            case blend_normal:
+            case blend_multiply:
+            case blend_screen:
+            case blend_darken:
+            case blend_lighten:
+            case blend_difference:
+            case blend_exclusion:
+            case blend_addition:
+            case blend_subtract:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void composite_row(int[] src, int[] dst, int count, int opacity, int blendmode) {
+        for (int i = 0; i < count; i++) {
+            var s = src[i];
+            var sa = s & 0xFF;
+            if (opacity != 255) {
+                sa = mul_un8(sa, opacity);
+            }
+
+            // fully transparent source pixels leave the frame as is
+            if (sa == 0) continue;
+
+            var d = dst[i];
+            var da = d & 0xFF;
+
+            // blend the source color with the backdrop, weighted by how opaque the backdrop is
+            if (blendmode != blend_normal && da != 0) {
+                s = blend_color(s, d, blendmode, da);
+            }
+
+            // opaque source pixels, or pixels over nothing, are copied
+            if (sa == 255 || da == 0) {
+                dst[i] = (s & 0xFFFFFF00) | sa;
+                continue;
+            }
+
+            // normal blend, same as aseprite's rgba_blender_normal
+            var ra = sa + da - mul_un8(da, sa);
+            var r = channel(d, 24) + (channel(s, 24) - channel(d, 24)) * sa / ra;
+            var g = channel(d, 16) + (channel(s, 16) - channel(d, 16)) * sa / ra;
+            var b = channel(d,  8) + (channel(s,  8) - channel(d,  8)) * sa / ra;
+            dst[i] = (r << 24) | (g << 16) | (b << 8) | ra;
+        }
+    }
+
+    private static int blend_color(int s, int d, int blendmode, int da) {
+        var result = s & 0xFF;
+        for (int shift = 24; shift >= 8; shift -= 8) {
+            var sc = channel(s, shift);
+            var blended = blend_channel(channel(d, shift), sc, blendmode);
+            result |= (sc + (blended - sc) * da / 255) << shift;
+        }
+        return result;
+    }
+
+    private static int blend_channel(int b, int s, int blendmode) {
+        switch (blendmode) {
+            case blend_multiply:   return mul_un8(b, s);
+            case blend_screen:     return b + s - mul_un8(b, s);
+            case blend_darken:     return Math.min(b, s);
+            case blend_lighten:    return Math.max(b, s);
+            case blend_difference: return Math.abs(b - s);
+            case blend_exclusion:  return b + s - 2 * mul_un8(b, s);
+            case blend_addition:   return Math.min(b + s, 255);
+            case blend_subtract:   return Math.max(b - s, 0);
+            default:               return s;
+        }
+    }
+
+    private static int channel(int rgba, int shift) {
+        return (rgba >>> shift) & 0xFF;
+    }
+
+    /**
+     * Multiply two 0-255 values as if they were 0-1, rounded
+     */
+    private static int mul_un8(int a, int b) {
+        var t = a * b + 0x80;
+        return ((t >> 8) + t) >> 8;
     }
 
 }
@@ -34,6 +34,10 @@ public class Calc {
         return (t < target) ? min(t + delta, target) : max(t - delta, target);
     }
 
+    public static int approach(int t, int target, int delta) {
+        return (t < target) ? Math.min(t + delta, target) : Math.max(t - delta, target);
+    }
+
     public static int sign(int val) {
         return (val < 0) ? -1
              : (val > 0) ? 1
@@ -0,0 +1,43 @@
+package zendo.games.zenlib.utils;
+
+/**
+ * Helpers for 16.16 fixed point values
+ *
+ * Integer math gives bit-exact results on every JVM,
+ * which is what deterministic simulation and replays need
+ */
+public class Fixed {
+
+    public static final int shift = 16;
+    public static final int one = 1 << shift;
+
+    public static int of(int value) {
+        return value << shift;
+    }
+
+    // note - only exact for values with a finite binary fraction,
+    //        fine for constants and fixed timesteps since the same float always maps to the same value
+    public static int of(float value) {
+        return Math.round(value * one);
+    }
+
+    public static float toFloat(int value) {
+        return value / (float) one;
+    }
+
+    public static int mul(int a, int b) {
+        return (int) (((long) a * b) >> shift);
+    }
+
+    public static int div(int a, int b) {
+        return (int) (((long) a << shift) / b);
+    }
+
+    /**
+     * Whole units, truncated towards zero like an (int) cast of a float
+     */
+    public static int trunc(int value) {
+        return (value >= 0) ? (value >> shift) : -((-value) >> shift);
+    }
+
+}
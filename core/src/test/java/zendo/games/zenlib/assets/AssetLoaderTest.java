@@ -0,0 +1,152 @@
+package zendo.games.zenlib.assets;
+
+import lombok.var;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AssetLoaderTest {
+
+    /**
+     * A job whose upload takes a fixed number of steps, uploaded by the test's stub Uploader rather than itself
+     */
+    private static class FakeJob implements AssetLoader.Job {
+        final String name;
+        final int steps;
+        int uploadedSteps;
+        volatile Thread loadedOn;
+        boolean cancelled;
+
+        FakeJob(String name, int steps) {
+            this.name = name;
+            this.steps = steps;
+        }
+
+        @Override
+        public void load() {
+            loadedOn = Thread.currentThread();
+        }
+
+        @Override
+        public boolean upload() {
+            throw new AssertionError("uploads should go through the stub uploader");
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private AssetLoader loader;
+    private List<String> uploads;
+    private int completions;
+    private List<Float> progress;
+
+    @Before
+    public void setUp() {
+        loader = new AssetLoader(2);
+        uploads = Collections.synchronizedList(new ArrayList<>());
+        progress = new ArrayList<>();
+        completions = 0;
+
+        // stands in for GL, records each step and reports when a job has run all of its steps
+        loader.uploader = (job) -> {
+            var fake = (FakeJob) job;
+            fake.uploadedSteps++;
+            uploads.add(fake.name + fake.uploadedSteps);
+            return fake.uploadedSteps == fake.steps;
+        };
+        loader.onProgress = (percent) -> progress.add(percent);
+        loader.onComplete = () -> completions++;
+    }
+
+    @After
+    public void tearDown() {
+        loader.dispose();
+    }
+
+    @Test
+    public void loadsOnWorkerThreadsAndUploadsInOrder() {
+        var jobs = new FakeJob[] { new FakeJob("a", 1), new FakeJob("b", 1), new FakeJob("c", 1) };
+        for (var job : jobs) {
+            loader.submit(job);
+        }
+        loader.finish();
+
+        assertEquals(Arrays.asList("a1", "b1", "c1"), uploads);
+        for (var job : jobs) {
+            assertNotNull(job.loadedOn);
+            assertNotSame(Thread.currentThread(), job.loadedOn);
+        }
+        assertTrue(loader.isDone());
+        assertEquals(1, completions);
+        assertEquals(Arrays.asList(1f / 3f, 2f / 3f, 1f), progress);
+    }
+
+    @Test
+    public void splitsLargeUploadsAcrossFrames() {
+        var big = new FakeJob("big", 3);
+        var small = new FakeJob("small", 1);
+        loader.submit(big);
+        loader.submit(small);
+
+        // with no budget to speak of, every frame runs exactly one step once the loads are done
+        loader.uploadBudgetMillis = 0;
+        var frames = 0;
+        var done = false;
+        while (!done) {
+            var before = uploads.size();
+            done = loader.update();
+            assertTrue(uploads.size() - before <= 1);
+            if (uploads.size() > before) frames++;
+            Thread.yield();
+        }
+
+        assertEquals(4, frames);
+        assertEquals(Arrays.asList("big1", "big2", "big3", "small1"), uploads);
+        assertEquals(1, completions);
+        // progress counts whole jobs, not steps
+        assertEquals(Arrays.asList(0.5f, 1f), progress);
+    }
+
+    @Test
+    public void finishIgnoresTheBudget() {
+        loader.uploadBudgetMillis = 0;
+        loader.submit(new FakeJob("big", 5));
+        loader.finish();
+
+        assertEquals(5, uploads.size());
+        assertEquals(0f, loader.uploadBudgetMillis, 0f);
+        assertEquals(1f, loader.progress(), 0f);
+    }
+
+    @Test
+    public void disposeCancelsJobsThatWerentUploaded() {
+        var uploaded = new FakeJob("uploaded", 1);
+        loader.submit(uploaded);
+        loader.finish();
+
+        var waiting = new FakeJob[] { new FakeJob("a", 2), new FakeJob("b", 1) };
+        for (var job : waiting) {
+            loader.submit(job);
+        }
+        loader.dispose();
+
+        assertFalse(uploaded.cancelled);
+        for (var job : waiting) {
+            assertNotNull(job.loadedOn);
+            assertTrue(job.cancelled);
+            assertEquals(0, job.uploadedSteps);
+        }
+        assertTrue(loader.isDone());
+    }
+
+}
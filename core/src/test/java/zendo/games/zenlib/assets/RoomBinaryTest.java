@@ -0,0 +1,114 @@
+package zendo.games.zenlib.assets;
+
+import com.badlogic.gdx.files.FileHandle;
+import lombok.var;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class RoomBinaryTest {
+
+    // note - tests run from the assets directory
+    private static final FileHandle start_room = new FileHandle("maps/room_0x0.tmx");
+
+    private FileHandle directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = new FileHandle(Files.createTempDirectory("rooms").toFile());
+    }
+
+    @After
+    public void tearDown() {
+        directory.deleteDirectory();
+    }
+
+    private FileHandle bake(FileHandle tmx) {
+        var room = TmxReader.read(tmx, 0, 0);
+        var baked = directory.child(tmx.nameWithoutExtension() + ".room");
+        baked.writeBytes(RoomBinary.write(room, tmx.parent().path(), RoomBinary.hash(tmx)), false);
+        return baked;
+    }
+
+    @Test
+    public void bakedRoomsMatchTheirSource() {
+        var source = TmxReader.read(start_room, 2, -1);
+        var baked = RoomBinary.load(bake(start_room), 2, -1);
+
+        assertEquals(2, baked.roomX);
+        assertEquals(-1, baked.roomY);
+        assertEquals(source.columns, baked.columns);
+        assertEquals(source.rows, baked.rows);
+        assertEquals(source.tileWidth, baked.tileWidth);
+        assertEquals(source.tileHeight, baked.tileHeight);
+
+        assertEquals(source.tilesets.size, baked.tilesets.size);
+        for (int i = 0; i < source.tilesets.size; i++) {
+            var expected = source.tilesets.get(i);
+            var actual = baked.tilesets.get(i);
+            assertEquals(expected.firstGid, actual.firstGid);
+            assertEquals(expected.tileCount, actual.tileCount);
+            assertEquals(expected.columns, actual.columns);
+            // image paths are stored relative to the room, so they resolve next to the baked file
+            assertEquals(new FileHandle(expected.image).name(), new FileHandle(actual.image).name());
+        }
+
+        assertEquals(source.layers.size, baked.layers.size);
+        for (int i = 0; i < source.layers.size; i++) {
+            var expected = source.layers.get(i);
+            var actual = baked.layers.get(i);
+            assertEquals(expected.name, actual.name);
+            for (int y = 0; y < source.rows; y++) {
+                for (int x = 0; x < source.columns; x++) {
+                    assertEquals(source.gid(expected, x, y), baked.gid(actual, x, y));
+                }
+            }
+        }
+
+        var solids = 0;
+        for (int y = 0; y < source.rows; y++) {
+            for (int x = 0; x < source.columns; x++) {
+                assertEquals(source.solid(x, y), baked.solid(x, y));
+                if (baked.solid(x, y)) solids++;
+            }
+        }
+        assertTrue(solids > 0);
+
+        assertEquals(source.spawners.size, baked.spawners.size);
+        for (int i = 0; i < source.spawners.size; i++) {
+            assertEquals(source.spawners.get(i).x, baked.spawners.get(i).x);
+            assertEquals(source.spawners.get(i).y, baked.spawners.get(i).y);
+            assertEquals(source.spawners.get(i).target, baked.spawners.get(i).target);
+        }
+    }
+
+    @Test
+    public void bakedRoomsGoStaleWhenTheirSourceChanges() {
+        var tmx = directory.child("room_0x0.tmx");
+        tmx.writeBytes(start_room.readBytes(), false);
+        var baked = bake(tmx);
+        assertTrue(RoomBinary.isBakedFrom(baked, tmx));
+
+        // any edit to the source, even one that doesn't change the room
+        tmx.writeString("\n", true);
+        assertFalse(RoomBinary.isBakedFrom(baked, tmx));
+    }
+
+    @Test
+    public void bakedRoomsFromAnotherVersionAreStale() {
+        var baked = bake(start_room);
+        var bytes = baked.readBytes();
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(4, RoomBinary.version - 1);
+        baked.writeBytes(bytes, false);
+
+        assertFalse(RoomBinary.isBakedFrom(baked, start_room));
+    }
+
+}
@@ -0,0 +1,87 @@
+package zendo.games.zenlib.assets;
+
+import com.badlogic.gdx.files.FileHandle;
+import lombok.var;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class SpriteCacheTest {
+
+    private static final String settings = "1024x1024;RGBA8888;0";
+
+    private FileHandle directory;
+    private FileHandle player;
+    private FileHandle blob;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = new FileHandle(Files.createTempDirectory("sprite-cache").toFile());
+        player = directory.child("sources/player.ase");
+        blob = directory.child("sources/blob.ase");
+        player.writeString("player frames", false);
+        blob.writeString("blob frames", false);
+    }
+
+    @After
+    public void tearDown() {
+        directory.deleteDirectory();
+    }
+
+    @Test
+    public void keysAreStableHexHashes() {
+        var key = SpriteCache.key(settings, player, blob);
+        assertEquals(40, key.length());
+        assertTrue(key.matches("[0-9a-f]+"));
+        assertEquals(key, SpriteCache.key(settings, player, blob));
+    }
+
+    @Test
+    public void keysChangeWithTheSources() {
+        var key = SpriteCache.key(settings, player, blob);
+
+        player.writeString("!", true);
+        assertNotEquals(key, SpriteCache.key(settings, player, blob));
+    }
+
+    @Test
+    public void keysChangeWithTheSettings() {
+        assertNotEquals(SpriteCache.key(settings, player), SpriteCache.key(settings + ";padded", player));
+    }
+
+    @Test
+    public void keysDependOnWhichFilesAreHashed() {
+        // same bytes under another name, and the same files in another order
+        var renamed = directory.child("sources/renamed.ase");
+        renamed.writeBytes(player.readBytes(), false);
+        assertNotEquals(SpriteCache.key(settings, player), SpriteCache.key(settings, renamed));
+        assertNotEquals(SpriteCache.key(settings, player, blob), SpriteCache.key(settings, blob, player));
+    }
+
+    @Test
+    public void pruneKeepsOnlyTheCurrentEntry() {
+        var cacheDirectory = directory.child("cache");
+        var cache = new SpriteCache(cacheDirectory);
+        var stale = SpriteCache.key(settings, blob);
+        var current = SpriteCache.key(settings, player);
+
+        for (var key : new String[] { stale, current }) {
+            cacheDirectory.child(key + ".atlas").writeString("atlas", false);
+            cacheDirectory.child(key + ".sprites").writeString("sprites", false);
+            cacheDirectory.child(key + "1.png").writeString("page", false);
+        }
+        assertTrue(cache.has(stale));
+
+        cache.prune(current);
+        assertFalse(cache.has(stale));
+        assertFalse(cacheDirectory.child(stale + "1.png").exists());
+        assertTrue(cache.has(current));
+        assertTrue(cacheDirectory.child(current + "1.png").exists());
+    }
+
+}
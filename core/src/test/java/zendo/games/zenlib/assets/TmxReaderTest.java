@@ -0,0 +1,209 @@
+package zendo.games.zenlib.assets;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import lombok.var;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class TmxReaderTest {
+
+    private static final int columns = 3;
+    private static final int rows = 2;
+    private static final long flipped_horizontally = 0x80000000L;
+
+    // cells in file order, top row first, the last one has a flip flag set
+    private static final long[] gids = { 1, 0, 2, 0, 3, 4 | flipped_horizontally };
+
+    private FileHandle directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = new FileHandle(Files.createTempDirectory("tmx").toFile());
+    }
+
+    @After
+    public void tearDown() {
+        directory.deleteDirectory();
+    }
+
+    private Room read(String data) {
+        var tmx = directory.child("room_0x0.tmx");
+        tmx.writeString(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+              + "<map width=\"" + columns + "\" height=\"" + rows + "\" tilewidth=\"16\" tileheight=\"16\" infinite=\"0\">\n"
+              + " <tileset firstgid=\"1\" name=\"tiles\" tilewidth=\"16\" tileheight=\"16\" tilecount=\"40\" columns=\"4\">\n"
+              + "  <image source=\"tiles.png\" width=\"64\" height=\"160\"/>\n"
+              + " </tileset>\n"
+              + " <!-- a comment, <layer> inside it is ignored -->\n"
+              + " <layer id=\"1\" name=\"collision\" width=\"" + columns + "\" height=\"" + rows + "\">\n"
+              + data
+              + " </layer>\n"
+              + " <objectgroup id=\"2\" name=\"objects\">\n"
+              + "  <object id=\"3\" type=\"spawner\" x=\"16\" y=\"8.5\" width=\"16\" height=\"16\">\n"
+              + "   <properties>\n"
+              + "    <property name=\"target\" value=\"blob\"/>\n"
+              + "   </properties>\n"
+              + "  </object>\n"
+              + "  <object id=\"4\" type=\"decoration\" x=\"0\" y=\"0\"/>\n"
+              + " </objectgroup>\n"
+              + "</map>\n", false);
+        return TmxReader.read(tmx, 0, 0);
+    }
+
+    private static byte[] littleEndianGids() {
+        var bytes = new byte[gids.length * 4];
+        for (int i = 0; i < gids.length; i++) {
+            for (int b = 0; b < 4; b++) {
+                bytes[i * 4 + b] = (byte) (gids[i] >>> (8 * b));
+            }
+        }
+        return bytes;
+    }
+
+    private static String base64(byte[] bytes) {
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    private static byte[] zlib(byte[] bytes) throws IOException {
+        var out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+            deflater.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        var out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static void assertGids(Room room) {
+        assertEquals(columns, room.columns);
+        assertEquals(rows, room.rows);
+        var layer = room.layer("collision");
+        assertNotNull(layer);
+
+        // rows are flipped so row 0 is the bottom, and flip flags are stripped
+        assertEquals(0, room.gid(layer, 0, 0));
+        assertEquals(3, room.gid(layer, 1, 0));
+        assertEquals(4, room.gid(layer, 2, 0));
+        assertEquals(1, room.gid(layer, 0, 1));
+        assertEquals(0, room.gid(layer, 1, 1));
+        assertEquals(2, room.gid(layer, 2, 1));
+
+        assertFalse(room.solid(0, 0));
+        assertTrue(room.solid(1, 0));
+    }
+
+    @Test
+    public void readsCsvLayers() {
+        var csv = new StringBuilder();
+        for (int i = 0; i < gids.length; i++) {
+            csv.append(gids[i]).append((i % columns == columns - 1) ? ",\n" : ",");
+        }
+        csv.setLength(csv.length() - 2);
+        assertGids(read("  <data encoding=\"csv\">\n" + csv + "\n</data>\n"));
+    }
+
+    @Test
+    public void readsBase64Layers() {
+        assertGids(read("  <data encoding=\"base64\">\n   " + base64(littleEndianGids()) + "\n  </data>\n"));
+    }
+
+    @Test
+    public void readsZlibLayers() throws IOException {
+        assertGids(read("  <data encoding=\"base64\" compression=\"zlib\">" + base64(zlib(littleEndianGids())) + "</data>\n"));
+    }
+
+    @Test
+    public void readsGzipLayers() throws IOException {
+        assertGids(read("  <data encoding=\"base64\" compression=\"gzip\">" + base64(gzip(littleEndianGids())) + "</data>\n"));
+    }
+
+    @Test
+    public void readsXmlLayers() {
+        var tiles = new StringBuilder("  <data>\n");
+        for (var gid : gids) {
+            tiles.append("   <tile gid=\"").append(gid).append("\"/>\n");
+        }
+        tiles.append("  </data>\n");
+        assertGids(read(tiles.toString()));
+    }
+
+    @Test
+    public void readsTilesetsAndSpawners() {
+        var room = read("  <data encoding=\"csv\">1,0,2,0,3,4</data>\n");
+
+        assertEquals(1, room.tilesets.size);
+        var tileset = room.tilesets.first();
+        assertEquals(1, tileset.firstGid);
+        assertEquals(40, tileset.tileCount);
+        assertEquals(4, tileset.columns);
+        assertEquals(directory.child("tiles.png").path(), tileset.image);
+
+        // only spawner objects are kept, with y flipped to y-up
+        assertEquals(1, room.spawners.size);
+        var spawner = room.spawners.first();
+        assertEquals("blob", spawner.target);
+        assertEquals(16, spawner.x);
+        assertEquals(rows * 16 - 8, spawner.y);
+    }
+
+    @Test
+    public void readsSpawnersWithAClass() {
+        // tiled 1.9 and later write the object type as a class
+        var tmx = directory.child("room_0x0.tmx");
+        tmx.writeString("<map width=\"2\" height=\"2\" tilewidth=\"16\" tileheight=\"16\">\n"
+                      + " <objectgroup id=\"1\" name=\"objects\">\n"
+                      + "  <object id=\"2\" class=\"spawner\" x=\"0\" y=\"16\">\n"
+                      + "   <properties><property name=\"target\" value=\"player\"/></properties>\n"
+                      + "  </object>\n"
+                      + " </objectgroup>\n"
+                      + "</map>\n", false);
+        var room = TmxReader.read(tmx, 0, 0);
+
+        assertEquals(1, room.spawners.size);
+        assertEquals("player", room.spawners.first().target);
+        assertEquals(16, room.spawners.first().y);
+    }
+
+    @Test
+    public void rejectsTruncatedElements() {
+        var whole = "<map width=\"2\" height=\"2\" tilewidth=\"16\" tileheight=\"16\">\n <layer id=\"1\" name=\"collision\"";
+        var tmx = directory.child("room_0x0.tmx");
+        // cut off inside the tag, before a value's quote, and inside a value
+        for (var end : new int[] { whole.length(), whole.length() - 11, whole.length() - 3 }) {
+            tmx.writeString(whole.substring(0, end), false);
+            try {
+                TmxReader.read(tmx, 0, 0);
+                fail("expected a parse error for " + whole.substring(0, end));
+            } catch (GdxRuntimeException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("'layer' at byte " + whole.indexOf("layer")));
+                assertTrue(e.getMessage(), e.getMessage().contains(tmx.path()));
+            }
+        }
+    }
+
+    @Test(expected = GdxRuntimeException.class)
+    public void rejectsTruncatedCompressedLayers() throws IOException {
+        var compressed = zlib(littleEndianGids());
+        var truncated = new byte[compressed.length / 2];
+        System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+        read("  <data encoding=\"base64\" compression=\"zlib\">" + base64(truncated) + "</data>\n");
+    }
+
+}
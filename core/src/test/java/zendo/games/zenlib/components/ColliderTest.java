@@ -0,0 +1,152 @@
+package zendo.games.zenlib.components;
+
+import lombok.var;
+import org.junit.Before;
+import org.junit.Test;
+import zendo.games.zenlib.ecs.Mask;
+import zendo.games.zenlib.ecs.World;
+import zendo.games.zenlib.utils.Point;
+import zendo.games.zenlib.utils.RectI;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ColliderTest {
+
+    private World world;
+
+    @Before
+    public void setUp() {
+        world = new World();
+    }
+
+    private Collider rect(int x, int y, int w, int h) {
+        var entity = world.addEntity(Point.at(x, y));
+        return entity.add(Collider.makeRect(RectI.at(0, 0, w, h)), Collider.class);
+    }
+
+    private Collider grid(int x, int y, int columns, int rows) {
+        var entity = world.addEntity(Point.at(x, y));
+        var collider = entity.add(Collider.makeGrid(8, columns, rows), Collider.class);
+        collider.mask = Mask.solid;
+        return collider;
+    }
+
+    @Test
+    public void copiesDontShareTheTemplateRect() {
+        var template = Collider.makeRect(RectI.at(0, 0, 8, 8));
+        var copy = world.addEntity().add(template, Collider.class);
+        var other = rect(20, 0, 8, 8);
+
+        assertFalse(copy.overlaps(other));
+        template.setRect(0, 0, 32, 8);
+        assertFalse(copy.overlaps(other));
+        assertEquals(8, copy.getRect().w);
+    }
+
+    @Test
+    public void readingTheRectDoesntMarkItMoved() {
+        world.addSystem(new Collisions(world));
+        var collider = rect(0, 0, 8, 8);
+        world.update(1 / 60f);
+
+        assertEquals(8, collider.getRect().w);
+        assertFalse(collider.moved);
+
+        collider.setRect(0, 0, 16, 8);
+        assertTrue(collider.moved);
+        assertTrue(collider.overlaps(rect(12, 0, 8, 8)));
+    }
+
+    @Test
+    public void rectToRectOffset() {
+        var a = rect(0, 0, 8, 8);
+        var b = rect(10, 0, 8, 8);
+
+        assertFalse(a.overlaps(b));
+        assertTrue(a.overlaps(b, 3, 0));
+        assertFalse(a.overlaps(b, -3, 0));
+    }
+
+    @Test
+    public void offsetGridMovesTowardsTheRect() {
+        var solid = grid(0, 0, 4, 1);
+        solid.setCell(3, 0, true);
+        var box = rect(34, 0, 4, 4);
+
+        // the solid cell spans [24, 32), offsetting the grid right by 4 reaches the box, left doesn't
+        assertFalse(solid.overlaps(box));
+        assertTrue(solid.overlaps(box, 4, 0));
+        assertFalse(solid.overlaps(box, -4, 0));
+
+        // and the rect's view of the same check agrees
+        assertTrue(box.overlaps(solid, -4, 0));
+        assertFalse(box.overlaps(solid, 4, 0));
+    }
+
+    private static int area(List<RectI> rects) {
+        var area = 0;
+        for (var rect : rects) {
+            area += rect.w * rect.h;
+        }
+        return area;
+    }
+
+    @Test
+    public void mergesRowsAcrossBlocks() {
+        var floor = grid(0, 0, 40, 4);
+        floor.setCells(0, 0, 40, 2, true);
+
+        var rects = floor.getGrid().rects();
+        assertEquals(1, rects.size());
+        assertEquals(40, rects.get(0).w);
+        assertEquals(2, rects.get(0).h);
+    }
+
+    @Test
+    public void mergesColumnsAcrossBlocks() {
+        var wall = grid(0, 0, 4, 40);
+        wall.setCells(1, 0, 2, 40, true);
+
+        var rects = wall.getGrid().rects();
+        assertEquals(1, rects.size());
+        assertEquals(2, rects.get(0).w);
+        assertEquals(40, rects.get(0).h);
+    }
+
+    @Test
+    public void mergedRectsCoverEverySolidCellOnce() {
+        for (var chunked : new boolean[] { false, true }) {
+            var entity = world.addEntity();
+            var template = chunked ? Collider.makeChunkedGrid(8, 50, 37) : Collider.makeGrid(8, 50, 37);
+            var grid = entity.add(template, Collider.class);
+
+            var solid = 0;
+            for (int y = 0; y < 37; y++) {
+                for (int x = 0; x < 50; x++) {
+                    // a floor, a wall, and some noise
+                    if (y < 3 || x == 20 || (x * 7 + y * 13) % 5 == 0) {
+                        grid.setCell(x, y, true);
+                        solid++;
+                    }
+                }
+            }
+
+            var rects = grid.getGrid().rects();
+            assertEquals(solid, area(rects));
+            for (var rect : rects) {
+                for (int y = rect.y; y < rect.y + rect.h; y++) {
+                    for (int x = rect.x; x < rect.x + rect.w; x++) {
+                        assertTrue(grid.getGrid().get(x, y));
+                    }
+                }
+            }
+
+            // editing a cell re-merges and re-joins
+            grid.setCell(20, 20, false);
+            assertEquals(solid - 1, area(grid.getGrid().rects()));
+        }
+    }
+
+}
@@ -0,0 +1,250 @@
+package zendo.games.zenlib.components;
+
+import com.badlogic.gdx.utils.Array;
+import lombok.var;
+import org.junit.Before;
+import org.junit.Test;
+import zendo.games.zenlib.ecs.Component;
+import zendo.games.zenlib.ecs.Mask;
+import zendo.games.zenlib.ecs.World;
+import zendo.games.zenlib.utils.Point;
+import zendo.games.zenlib.utils.RectI;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CollisionsTest {
+
+    // subscribes to enemy contacts when it wakes up, and records what it's told
+    public static class Recorder extends Component {
+        public final List<String> events = new ArrayList<>();
+        Collider collider;
+        Collider.Subscription subscription;
+
+        @Override
+        public void awake() {
+            collider = get(Collider.class);
+            subscription = collider.subscribe(Mask.enemy);
+            subscription.onEnter = (self, other) -> events.add("enter");
+            subscription.onStay  = (self, other) -> events.add("stay");
+            subscription.onExit  = (self, other) -> events.add("exit");
+        }
+
+        @Override
+        public void destroyed() {
+            collider.unsubscribe(subscription);
+        }
+    }
+
+    private World world;
+
+    @Before
+    public void setUp() {
+        world = new World();
+        world.addSystem(new Collisions(world));
+    }
+
+    private Recorder listener(int x, int y) {
+        var entity = world.addEntity(Point.at(x, y));
+        var recorder = entity.add(new Recorder(), Recorder.class);
+        entity.add(Collider.makeRect(RectI.at(0, 0, 8, 8)), Collider.class);
+        return recorder;
+    }
+
+    private Collider enemy(int x, int y) {
+        var entity = world.addEntity(Point.at(x, y));
+        var collider = entity.add(Collider.makeRect(RectI.at(0, 0, 8, 8)), Collider.class);
+        collider.mask = Mask.enemy;
+        return collider;
+    }
+
+    @Test
+    public void subscribesOnAwakeInTimeForTheFirstTick() {
+        var recorder = listener(0, 0);
+        enemy(4, 4);
+
+        world.update(1 / 60f);
+
+        assertEquals(1, recorder.events.size());
+        assertEquals("enter", recorder.events.get(0));
+    }
+
+    @Test
+    public void deliversEnterStayExit() {
+        var recorder = listener(0, 0);
+        var enemy = enemy(4, 4);
+
+        world.update(1 / 60f);
+        world.update(1 / 60f);
+        enemy.entity().position.x = 100;
+        world.update(1 / 60f);
+        world.update(1 / 60f);
+
+        assertEquals(3, recorder.events.size());
+        assertEquals("enter", recorder.events.get(0));
+        assertEquals("stay", recorder.events.get(1));
+        assertEquals("exit", recorder.events.get(2));
+    }
+
+    @Test
+    public void ignoresCollidersThatDontMatchTheMask() {
+        var recorder = listener(0, 0);
+        var other = enemy(4, 4);
+        other.mask = Mask.solid;
+
+        world.update(1 / 60f);
+
+        assertTrue(recorder.events.isEmpty());
+    }
+
+    @Test
+    public void copiesDontShareSubscriptionsWithTheirTemplate() {
+        var template = Collider.makeRect(RectI.at(0, 0, 8, 8));
+        template.subscribe(Mask.enemy);
+
+        var entity = world.addEntity();
+        var copy = entity.add(template, Collider.class);
+        copy.subscribe(Mask.solid);
+
+        assertEquals(1, template.subscriptions.size());
+        assertEquals(2, copy.subscriptions.size());
+        assertFalse(copy.destroyed);
+    }
+
+    @Test
+    public void destroyedListenersAreUnsubscribed() {
+        var recorder = listener(0, 0);
+        enemy(4, 4);
+        world.update(1 / 60f);
+
+        var collider = recorder.collider;
+        recorder.destroy();
+
+        assertTrue(collider.subscriptions.isEmpty());
+    }
+
+    @Test
+    public void queriesMatchBruteForceAsThingsMove() {
+        var random = new Random(1234);
+        var colliders = new Array<Collider>();
+        for (int i = 0; i < 200; i++) {
+            var entity = world.addEntity(Point.at(random.nextInt(1000), random.nextInt(200)));
+            var collider = entity.add(Collider.makeRect(RectI.at(0, 0, 2 + random.nextInt(30), 2 + random.nextInt(30))), Collider.class);
+            collider.mask = random.nextBoolean() ? Mask.solid : Mask.enemy;
+            colliders.add(collider);
+        }
+        var floor = world.addEntity(Point.at(-50, -40)).add(Collider.makeGrid(8, 150, 4), Collider.class);
+        floor.mask = Mask.solid;
+        floor.setCells(0, 0, 150, 1, true);
+        colliders.add(floor);
+
+        var found = new Array<Collider>();
+        for (int tick = 0; tick < 5; tick++) {
+            world.update(1 / 60f);
+
+            // move and add some things after the pass, so queries have to handle a stale order
+            for (int i = 0; i < 40; i++) {
+                var collider = colliders.get(random.nextInt(200));
+                collider.entity().position.x += random.nextInt(200) - 100;
+                collider.entity().position.y += random.nextInt(40) - 20;
+                collider.moved();
+            }
+            for (int i = 0; i < 10; i++) {
+                var entity = world.addEntity(Point.at(random.nextInt(1000), random.nextInt(200)));
+                var collider = entity.add(Collider.makeRect(RectI.at(0, 0, 8, 8)), Collider.class);
+                collider.mask = Mask.solid;
+                colliders.add(collider);
+            }
+
+            for (var self : colliders) {
+                if (self.shape() == Collider.Shape.grid) continue;
+
+                var offsetX = random.nextInt(5) - 2;
+                var offsetY = random.nextInt(5) - 2;
+                var expected = new Array<Collider>();
+                for (var other : colliders) {
+                    if (other != self && (other.mask & Mask.solid) == Mask.solid && self.overlaps(other, offsetX, offsetY)) {
+                        expected.add(other);
+                    }
+                }
+
+                assertEquals(expected.size > 0, self.check(Mask.solid, offsetX, offsetY));
+                assertEquals(expected.size, self.collideAll(Mask.solid, offsetX, offsetY, found));
+                for (var other : expected) {
+                    assertTrue(found.contains(other, true));
+                }
+
+                var rect = RectI.at(random.nextInt(1000), random.nextInt(200), 20, 20);
+                var overlapping = 0;
+                for (var other : colliders) {
+                    if ((other.mask & Mask.enemy) == Mask.enemy && other.overlaps(rect)) {
+                        overlapping++;
+                    }
+                }
+                assertEquals(overlapping, world.system(Collisions.class).overlapping(rect, Mask.enemy, found));
+            }
+        }
+    }
+
+    @Test
+    public void queriesFindEntitiesMovedWithoutCallingMoved() {
+        var self = world.addEntity(Point.at(0, 0)).add(Collider.makeRect(RectI.at(0, 0, 8, 8)), Collider.class);
+        var others = new Array<Collider>();
+        for (int i = 1; i <= 20; i++) {
+            var other = world.addEntity(Point.at(i * 100, 0)).add(Collider.makeRect(RectI.at(0, 0, 8, 8)), Collider.class);
+            other.mask = Mask.solid;
+            others.add(other);
+        }
+        world.update(1 / 60f);
+        assertFalse(self.check(Mask.solid));
+
+        // the last one in the pass's order jumps onto 'self', like a knockback or a clamp would
+        var last = others.peek();
+        last.entity().position.x = 4;
+        assertTrue(self.check(Mask.solid));
+        var found = new Array<Collider>();
+        assertEquals(1, self.collideAll(Mask.solid, 0, 0, found));
+        assertSame(last, found.first());
+
+        // and the query doesn't find it where it was
+        assertEquals(0, world.system(Collisions.class).overlapping(RectI.at(2000, 0, 8, 8), Mask.solid, found));
+    }
+
+    @Test
+    public void parallelNarrowphaseMatchesSerial() {
+        var serial = new World();
+        var parallel = new World();
+        var serialCollisions = serial.addSystem(new Collisions(serial));
+        var parallelCollisions = parallel.addSystem(new Collisions(parallel));
+        parallelCollisions.parallel = true;
+        parallelCollisions.parallelThreshold = 1;
+
+        for (var target : new World[] { serial, parallel }) {
+            var random = new Random(99);
+            for (int i = 0; i < 600; i++) {
+                var entity = target.addEntity(Point.at(random.nextInt(400), random.nextInt(100)));
+                var collider = entity.add(Collider.makeRect(RectI.at(0, 0, 4 + random.nextInt(12), 4 + random.nextInt(12))), Collider.class);
+                collider.mask = Mask.enemy;
+                collider.subscribe(Mask.enemy);
+            }
+            var floor = target.addEntity(Point.at(0, 0)).add(Collider.makeGrid(8, 50, 2), Collider.class);
+            floor.mask = Mask.solid;
+            floor.setCells(0, 0, 50, 1, true);
+            floor.subscribe(Mask.enemy);
+        }
+
+        serial.update(1 / 60f);
+        parallel.update(1 / 60f);
+
+        assertTrue(serialCollisions.pairCount() > 0);
+        assertEquals(serialCollisions.pairCount(), parallelCollisions.pairCount());
+        for (int i = 0; i < serialCollisions.pairCount(); i++) {
+            assertEquals(serialCollisions.pairA(i).entity().position.x, parallelCollisions.pairA(i).entity().position.x);
+            assertEquals(serialCollisions.pairB(i).entity().position.x, parallelCollisions.pairB(i).entity().position.x);
+        }
+    }
+
+}
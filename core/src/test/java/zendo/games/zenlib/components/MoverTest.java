@@ -0,0 +1,133 @@
+package zendo.games.zenlib.components;
+
+import lombok.var;
+import org.junit.Before;
+import org.junit.Test;
+import zendo.games.zenlib.ecs.Mask;
+import zendo.games.zenlib.ecs.World;
+import zendo.games.zenlib.utils.Fixed;
+import zendo.games.zenlib.utils.Point;
+import zendo.games.zenlib.utils.RectI;
+
+import static org.junit.Assert.*;
+
+public class MoverTest {
+
+    private World world;
+
+    @Before
+    public void setUp() {
+        world = new World();
+        world.addSystem(new Collisions(world));
+        world.addSystem(new Movers(world));
+
+        var floor = world.addEntity(Point.at(0, 0)).add(Collider.makeGrid(8, 20, 4), Collider.class);
+        floor.mask = Mask.solid;
+        floor.setCells(0, 0, 20, 1, true);
+    }
+
+    private Mover mover(int x, int y, boolean fixedPoint) {
+        var entity = world.addEntity(Point.at(x, y));
+        var mover = entity.add(new Mover(), Mover.class);
+        mover.collider = entity.add(Collider.makeRect(RectI.at(0, 0, 4, 4)), Collider.class);
+        mover.fixedPoint = fixedPoint;
+        return mover;
+    }
+
+    @Test
+    public void speedAccessorsWorkInEitherMode() {
+        var floating = mover(10, 20, false);
+        var fixed = mover(30, 20, true);
+
+        floating.setSpeed(12.5f, -3);
+        fixed.setSpeed(12.5f, -3);
+
+        assertEquals(12.5f, floating.speed.x, 0);
+        assertEquals(Fixed.of(12.5f), fixed.fixedSpeed.x);
+        assertEquals(floating.speedX(), fixed.speedX(), 0);
+        assertEquals(floating.speedY(), fixed.speedY(), 0);
+    }
+
+    @Test
+    public void fixedPointMoversFallAndLand() {
+        var mover = mover(10, 40, true);
+        mover.fixedGravity = Fixed.of(-300);
+
+        for (int i = 0; i < 120; i++) {
+            world.update(1 / 60f);
+        }
+
+        assertEquals(8, mover.entity().position.y);
+        assertTrue(mover.onGround());
+    }
+
+    @Test
+    public void fixedPointMovementIsRepeatable() {
+        var a = mover(10, 30, true);
+        var b = mover(60, 30, true);
+        for (var mover : new Mover[] { a, b }) {
+            mover.fixedGravity = Fixed.of(-300);
+            mover.fixedFriction = Fixed.of(50);
+            mover.setSpeed(37.3f, 91.7f);
+        }
+
+        for (int i = 0; i < 90; i++) {
+            world.update(1 / 60f);
+            assertEquals(a.entity().position.x - 10, b.entity().position.x - 60);
+            assertEquals(a.entity().position.y, b.entity().position.y);
+            assertEquals(a.fixedSpeed.x, b.fixedSpeed.x);
+        }
+    }
+
+    @Test
+    public void batchedMovementMatchesUnbatched() {
+        var single = mover(10, 60, false);
+        single.gravity = -300;
+        single.friction = 100;
+        single.speed.set(40, 50);
+
+        var other = new World();
+        other.addSystem(new Collisions(other));
+        var movers = other.addSystem(new Movers(other));
+        movers.enabled = true;
+        var floor = other.addEntity(Point.at(0, 0)).add(Collider.makeGrid(8, 20, 4), Collider.class);
+        floor.mask = Mask.solid;
+        floor.setCells(0, 0, 20, 1, true);
+        var entity = other.addEntity(Point.at(10, 60));
+        var batched = entity.add(new Mover(), Mover.class);
+        batched.collider = entity.add(Collider.makeRect(RectI.at(0, 0, 4, 4)), Collider.class);
+        batched.gravity = -300;
+        batched.friction = 100;
+        batched.speed.set(40, 50);
+
+        for (int i = 0; i < 120; i++) {
+            world.update(1 / 60f);
+            other.update(1 / 60f);
+            assertEquals(single.entity().position.x, batched.entity().position.x);
+            assertEquals(single.entity().position.y, batched.entity().position.y);
+        }
+        assertEquals(1, movers.count());
+    }
+
+    @Test
+    public void batchedMoversSkipMoversDestroyedByEarlierHits() {
+        world.system(Movers.class).enabled = true;
+
+        var first = mover(10, 20, false);
+        var second = mover(40, 20, false);
+        first.speed.set(0, -600);
+        second.speed.set(0, -600);
+        first.onHitY = (self) -> {
+            self.stopY();
+            second.entity().destroy();
+        };
+
+        world.update(1 / 60f);
+        world.update(1 / 60f);
+
+        assertTrue(second.destroyed);
+        assertEquals(20 - 10, second.entity().position.y);
+        assertEquals(8, first.entity().position.y);
+    }
+
+}
@@ -0,0 +1,161 @@
+package zendo.games.zenlib.components;
+
+import com.badlogic.gdx.utils.Array;
+import lombok.var;
+import org.junit.Before;
+import org.junit.Test;
+import zendo.games.zenlib.ecs.Mask;
+import zendo.games.zenlib.ecs.World;
+import zendo.games.zenlib.utils.Point;
+import zendo.games.zenlib.utils.RectI;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RaycastTest {
+
+    private World world;
+    private Collisions collisions;
+
+    @Before
+    public void setUp() {
+        world = new World();
+        collisions = world.addSystem(new Collisions(world));
+    }
+
+    private Collider rect(int x, int y, int w, int h, int mask) {
+        var entity = world.addEntity(Point.at(x, y));
+        var collider = entity.add(Collider.makeRect(RectI.at(0, 0, w, h)), Collider.class);
+        collider.mask = mask;
+        return collider;
+    }
+
+    @Test
+    public void hitsTheClosestRect() {
+        rect(50, -5, 10, 10, Mask.solid);
+        var near = rect(20, -5, 10, 10, Mask.solid);
+
+        var hit = new Collider.RayHit();
+        assertTrue(collisions.raycast(0, 0, 100, 0, Mask.solid, hit));
+        assertSame(near, hit.collider);
+        assertEquals(0.2f, hit.fraction, 0.0001f);
+        assertEquals(20, hit.x, 0.001f);
+        assertEquals(-1, hit.cellX);
+    }
+
+    @Test
+    public void ignoresCollidersOutsideTheMask() {
+        rect(20, -5, 10, 10, Mask.enemy);
+
+        assertFalse(collisions.raycast(0, 0, 100, 0, Mask.solid, null));
+        assertTrue(collisions.lineOfSight(0, 0, 100, 0, Mask.solid));
+        assertFalse(collisions.lineOfSight(0, 0, 100, 0, Mask.enemy));
+    }
+
+    @Test
+    public void stopsShortOfTheTarget() {
+        rect(20, -5, 10, 10, Mask.solid);
+
+        assertTrue(collisions.lineOfSight(0, 0, 19, 0, Mask.solid));
+        assertFalse(collisions.lineOfSight(0, 0, 21, 0, Mask.solid));
+    }
+
+    @Test
+    public void hitsGridCells() {
+        var entity = world.addEntity(Point.at(0, 0));
+        var grid = entity.add(Collider.makeGrid(8, 10, 10), Collider.class);
+        grid.mask = Mask.solid;
+        grid.setCell(5, 2, true);
+
+        var hit = new Collider.RayHit();
+        assertTrue(collisions.raycast(0, 20, 80, 20, Mask.solid, hit));
+        assertSame(grid, hit.collider);
+        assertEquals(40, hit.x, 0.001f);
+        assertEquals(5, hit.cellX);
+        assertEquals(2, hit.cellY);
+
+        assertFalse(collisions.raycast(0, 4, 80, 4, Mask.solid, null));
+    }
+
+    @Test
+    public void hitsAlongAnAxis() {
+        var blocker = rect(-5, 20, 10, 10, Mask.solid);
+        world.update(1 / 60f);
+
+        // a vertical segment's box has no width, it still has to find what it crosses
+        var hit = new Collider.RayHit();
+        assertTrue(collisions.raycast(0, 0, 0, 100, Mask.solid, hit));
+        assertSame(blocker, hit.collider);
+        assertEquals(20, hit.y, 0.001f);
+        assertFalse(collisions.lineOfSight(0, 0, 0, 100, Mask.solid));
+    }
+
+    @Test
+    public void windowedRaysMatchBruteForce() {
+        var random = new Random(4321);
+        var colliders = new Array<Collider>();
+        for (int i = 0; i < 300; i++) {
+            colliders.add(rect(random.nextInt(2000), random.nextInt(400), 2 + random.nextInt(40), 2 + random.nextInt(40), Mask.solid));
+        }
+
+        var hit = new Collider.RayHit();
+        var expected = new Collider.RayHit();
+        for (int tick = 0; tick < 3; tick++) {
+            world.update(1 / 60f);
+
+            // stale the pass's order, with and without telling it
+            for (int i = 0; i < 30; i++) {
+                var collider = colliders.get(random.nextInt(colliders.size));
+                collider.entity().position.x += random.nextInt(400) - 200;
+                if (random.nextBoolean()) collider.moved();
+            }
+
+            for (int i = 0; i < 200; i++) {
+                float x0 = random.nextInt(2000), y0 = random.nextInt(400);
+                float x1 = x0 + random.nextInt(300) - 150, y1 = y0 + random.nextInt(300) - 150;
+
+                var closest = 2f;
+                Collider closestCollider = null;
+                for (var collider : colliders) {
+                    expected.clear();
+                    if (collider.raycast(x0, y0, x1, y1, expected) && expected.fraction < closest) {
+                        closest = expected.fraction;
+                        closestCollider = collider;
+                    }
+                }
+
+                hit.clear();
+                assertEquals(closestCollider != null, collisions.raycast(x0, y0, x1, y1, Mask.solid, hit));
+                assertEquals(closestCollider == null, collisions.lineOfSight(x0, y0, x1, y1, Mask.solid));
+                if (closestCollider != null) {
+                    assertEquals(closest, hit.fraction, 0.0001f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void batchedRaysMatchSingleRays() {
+        rect(20, -5, 10, 10, Mask.solid);
+        rect(-5, 40, 10, 10, Mask.solid);
+
+        var rays = new Collisions.Rays();
+        for (int i = 0; i < 40; i++) {
+            var angle = i * (float) Math.PI * 2 / 40;
+            rays.add(0, 0, (float) Math.cos(angle) * 100, (float) Math.sin(angle) * 100);
+        }
+        collisions.raycast(rays, Mask.solid);
+
+        var hit = new Collider.RayHit();
+        for (int i = 0; i < rays.count; i++) {
+            var s = rays.segments;
+            hit.clear();
+            var single = collisions.raycast(s[i * 4], s[i * 4 + 1], s[i * 4 + 2], s[i * 4 + 3], Mask.solid, hit);
+            assertEquals(single, rays.hit[i]);
+            assertEquals(hit.fraction, rays.fraction[i], 0.0001f);
+            assertSame(hit.collider, rays.collider[i]);
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package zendo.games.zenlib.components;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import lombok.var;
+import org.junit.Before;
+import org.junit.Test;
+import zendo.games.zenlib.ecs.World;
+import zendo.games.zenlib.utils.Point;
+
+import static org.junit.Assert.*;
+
+public class TilemapTest {
+
+    private static final int tile_size = 8;
+    private static final float epsilon = 0.0001f;
+
+    /**
+     * A region with fixed texture coordinates that doesn't need a GL texture
+     */
+    private static class FakeRegion extends TextureRegion {
+        final float u, v, u2, v2;
+
+        FakeRegion(float u, float v, float u2, float v2) {
+            this.u = u;
+            this.v = v;
+            this.u2 = u2;
+            this.v2 = v2;
+        }
+
+        @Override public float getU()  { return u; }
+        @Override public float getV()  { return v; }
+        @Override public float getU2() { return u2; }
+        @Override public float getV2() { return v2; }
+        @Override public Texture getTexture() { return null; }
+    }
+
+    private World world;
+    private Tilemap tilemap;
+    private FakeRegion grass;
+    private FakeRegion stone;
+
+    @Before
+    public void setUp() {
+        world = new World();
+        tilemap = world.addEntity(Point.at(100, 50)).add(new Tilemap(tile_size, 40, 20), Tilemap.class);
+        grass = new FakeRegion(0f, 0f, 0.25f, 0.5f);
+        stone = new FakeRegion(0.25f, 0f, 0.5f, 0.5f);
+    }
+
+    private Tilemap.Chunk build(int chunkX, int chunkY) {
+        var chunk = tilemap.getChunk(chunkX, chunkY);
+        assertNotNull(chunk);
+        tilemap.buildChunk(chunkX, chunkY, chunk);
+        return chunk;
+    }
+
+    @Test
+    public void bakesOneQuadPerTile() {
+        tilemap.setCells(0, 0, 4, 3, grass);
+        tilemap.setCell(10, 10, stone);
+
+        var chunk = build(0, 0);
+        assertFalse(chunk.dirty);
+        assertEquals(1, chunk.textures.size);
+        assertEquals(13 * Tilemap.floats_per_tile, chunk.vertices.get(0).size);
+    }
+
+    @Test
+    public void bakesRelativeToTheMapOrigin() {
+        tilemap.setCell(16, 1, grass);
+
+        var vertices = build(1, 0).vertices.get(0);
+        assertEquals(Tilemap.floats_per_tile, vertices.size);
+
+        // corners are bottom left, top left, top right, bottom right, 5 floats apart
+        float x = 16 * tile_size;
+        float y = tile_size;
+        assertEquals(x,             vertices.get(0),  epsilon);
+        assertEquals(y,             vertices.get(1),  epsilon);
+        assertEquals(x,             vertices.get(5),  epsilon);
+        assertEquals(y + tile_size, vertices.get(6),  epsilon);
+        assertEquals(x + tile_size, vertices.get(10), epsilon);
+        assertEquals(y + tile_size, vertices.get(11), epsilon);
+        assertEquals(x + tile_size, vertices.get(15), epsilon);
+        assertEquals(y,             vertices.get(16), epsilon);
+
+        // moving the map doesn't change the baked vertices
+        tilemap.entity().position.x = -30;
+        tilemap.entity().position.y = 200;
+        var moved = build(1, 0).vertices.get(0);
+        assertEquals(x, moved.get(0), epsilon);
+        assertEquals(y, moved.get(1), epsilon);
+    }
+
+    @Test
+    public void bakesTextureCoordinatesLikeSpriteBatch() {
+        tilemap.setCell(0, 0, stone);
+
+        var vertices = build(0, 0).vertices.get(0);
+        // u, v per corner, v is flipped since regions are y-down
+        assertEquals(stone.u,  vertices.get(3),  epsilon);
+        assertEquals(stone.v2, vertices.get(4),  epsilon);
+        assertEquals(stone.u,  vertices.get(8),  epsilon);
+        assertEquals(stone.v,  vertices.get(9),  epsilon);
+        assertEquals(stone.u2, vertices.get(13), epsilon);
+        assertEquals(stone.v,  vertices.get(14), epsilon);
+        assertEquals(stone.u2, vertices.get(18), epsilon);
+        assertEquals(stone.v2, vertices.get(19), epsilon);
+    }
+
+    @Test
+    public void rebuildsDirtyChunks() {
+        tilemap.setCells(0, 0, 2, 2, grass);
+        var chunk = build(0, 0);
+        assertEquals(4 * Tilemap.floats_per_tile, chunk.vertices.get(0).size);
+
+        tilemap.setTile(1, 1, Tilemap.empty);
+        assertTrue(chunk.dirty);
+
+        build(0, 0);
+        assertEquals(3 * Tilemap.floats_per_tile, chunk.vertices.get(0).size);
+    }
+
+    @Test
+    public void releasesEmptyChunksAndTheirMeshes() {
+        tilemap.setCells(0, 0, 2, 1, grass);
+        var chunk = build(0, 0);
+        chunk.uploaded = true;
+
+        tilemap.setTile(0, 0, Tilemap.empty);
+        assertSame(chunk, tilemap.getChunk(0, 0));
+        assertTrue(chunk.uploaded);
+
+        tilemap.setTile(1, 0, Tilemap.empty);
+        assertNull(tilemap.getChunk(0, 0));
+        assertFalse(chunk.uploaded);
+    }
+
+    @Test
+    public void bakesPartialChunksAtTheEdge() {
+        // 40 columns leaves the third column of chunks 8 tiles wide
+        tilemap.setCells(32, 16, 8, 4, grass);
+
+        var chunk = build(2, 1);
+        assertEquals(32 * Tilemap.floats_per_tile, chunk.vertices.get(0).size);
+    }
+
+}
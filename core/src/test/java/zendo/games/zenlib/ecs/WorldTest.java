@@ -0,0 +1,27 @@
+package zendo.games.zenlib.ecs;
+
+import lombok.var;
+import org.junit.Test;
+import zendo.games.zenlib.utils.Point;
+
+import static org.junit.Assert.*;
+
+public class WorldTest {
+
+    @Test
+    public void reusedEntitiesHaveANewGeneration() {
+        var world = new World();
+        var entity = world.addEntity(Point.at(1, 2));
+        var generation = entity.generation;
+
+        entity.destroy();
+        assertNull(entity.world);
+
+        // the destroyed entity is handed out again, a stale reference can tell it isn't the same one
+        var reused = world.addEntity(Point.at(3, 4));
+        assertSame(entity, reused);
+        assertSame(world, reused.world);
+        assertNotEquals(generation, reused.generation);
+    }
+
+}
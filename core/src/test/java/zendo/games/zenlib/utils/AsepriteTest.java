@@ -0,0 +1,94 @@
+package zendo.games.zenlib.utils;
+
+import lombok.var;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class AsepriteTest {
+
+    private static final int width = 6;
+    private static final int height = 5;
+
+    /**
+     * A transparent RGBA8888 image with the given opaque pixels, as { x, y, rgba } triples
+     */
+    private static ByteBuffer pixels(int[]... opaque) {
+        var pixels = ByteBuffer.allocate(width * height * 4);
+        for (var pixel : opaque) {
+            pixels.putInt((pixel[1] * width + pixel[0]) * 4, pixel[2]);
+        }
+        return pixels;
+    }
+
+    private static Aseprite.Frame trim(ByteBuffer pixels) {
+        var frame = new Aseprite.Frame();
+        Aseprite.trim_frame(frame, pixels, width, height);
+        return frame;
+    }
+
+    @Test
+    public void trimsToTheOpaquePixels() {
+        var frame = trim(pixels(new int[] { 1, 2, 0xff0000ff }, new int[] { 3, 4, 0x00ff00ff }, new int[] { 2, 1, 0x0000ff80 }));
+
+        assertEquals(1, frame.trim_x);
+        assertEquals(1, frame.trim_y);
+        assertEquals(3, frame.trim_w);
+        assertEquals(4, frame.trim_h);
+    }
+
+    @Test
+    public void colorWithoutAlphaIsTransparent() {
+        // rgb set but alpha zero, only the pixel at 4,3 counts
+        var frame = trim(pixels(new int[] { 0, 0, 0xffffff00 }, new int[] { 4, 3, 0x000000ff }));
+
+        assertEquals(4, frame.trim_x);
+        assertEquals(3, frame.trim_y);
+        assertEquals(1, frame.trim_w);
+        assertEquals(1, frame.trim_h);
+    }
+
+    @Test
+    public void transparentFramesKeepOnePixel() {
+        var frame = trim(pixels());
+
+        assertEquals(0, frame.trim_x);
+        assertEquals(0, frame.trim_y);
+        assertEquals(1, frame.trim_w);
+        assertEquals(1, frame.trim_h);
+    }
+
+    @Test
+    public void identicalPixelsHashTheSameWherever() {
+        var frame = trim(pixels(new int[] { 0, 0, 0xff0000ff }, new int[] { 1, 1, 0x00ff00ff }));
+        var moved = trim(pixels(new int[] { 4, 3, 0xff0000ff }, new int[] { 5, 4, 0x00ff00ff }));
+
+        assertEquals(0, frame.trim_x);
+        assertEquals(4, moved.trim_x);
+        assertEquals(frame.hash, moved.hash);
+    }
+
+    @Test
+    public void differentPixelsHashDifferently() {
+        var frame = trim(pixels(new int[] { 0, 0, 0xff0000ff }, new int[] { 1, 1, 0x00ff00ff }));
+        var recolored = trim(pixels(new int[] { 0, 0, 0xff0000ff }, new int[] { 1, 1, 0x00fe00ff }));
+        var mirrored = trim(pixels(new int[] { 1, 0, 0xff0000ff }, new int[] { 0, 1, 0x00ff00ff }));
+
+        assertNotEquals(frame.hash, recolored.hash);
+        assertNotEquals(frame.hash, mirrored.hash);
+    }
+
+    @Test
+    public void sizeIsPartOfTheHash() {
+        // the same bytes trimmed to a 2x1 row and a 1x2 column
+        var row = trim(pixels(new int[] { 0, 0, 0xff0000ff }, new int[] { 1, 0, 0xff0000ff }));
+        var column = trim(pixels(new int[] { 0, 0, 0xff0000ff }, new int[] { 0, 1, 0xff0000ff }));
+
+        assertEquals(2, row.trim_w);
+        assertEquals(2, column.trim_h);
+        assertNotEquals(row.hash, column.hash);
+    }
+
+}
@@ -0,0 +1,44 @@
+package zendo.games.zenlib.utils;
+
+import lombok.var;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FixedTest {
+
+    @Test
+    public void convertsWholeAndFractionalValues() {
+        assertEquals(3 * Fixed.one, Fixed.of(3));
+        assertEquals(-2 * Fixed.one, Fixed.of(-2));
+        assertEquals(Fixed.one / 2, Fixed.of(0.5f));
+        assertEquals(-Fixed.one / 4, Fixed.of(-0.25f));
+        assertEquals(1.5f, Fixed.toFloat(Fixed.of(1.5f)), 0);
+    }
+
+    @Test
+    public void multipliesAndDivides() {
+        assertEquals(Fixed.of(6), Fixed.mul(Fixed.of(2), Fixed.of(3)));
+        assertEquals(Fixed.of(-1.5f), Fixed.mul(Fixed.of(3), Fixed.of(-0.5f)));
+        assertEquals(Fixed.of(0.75f), Fixed.div(Fixed.of(3), Fixed.of(4)));
+        assertEquals(Fixed.of(-4), Fixed.div(Fixed.of(2), Fixed.of(-0.5f)));
+
+        // large values don't overflow the intermediate product
+        assertEquals(Fixed.of(20000), Fixed.mul(Fixed.of(200), Fixed.of(100)));
+    }
+
+    @Test
+    public void truncatesTowardsZeroLikeAFloatCast() {
+        for (float value : new float[] { 0, 0.25f, 0.999f, 1, 2.5f, -0.25f, -0.999f, -1, -2.5f, 300.75f, -300.75f }) {
+            assertEquals((int) value, Fixed.trunc(Fixed.of(value)));
+        }
+    }
+
+    @Test
+    public void sameTimestepAlwaysGivesTheSameStep() {
+        var dt = 1 / 60f;
+        assertEquals(Fixed.of(dt), Fixed.of(dt));
+        assertEquals(Fixed.one / 60, Fixed.of(dt), 1);
+    }
+
+}
@@ -0,0 +1,37 @@
+package zendo.games.zenlib.lwjgl3;
+
+import com.badlogic.gdx.files.FileHandle;
+import zendo.games.zenlib.assets.Room;
+import zendo.games.zenlib.assets.RoomBinary;
+import zendo.games.zenlib.assets.RoomLoader;
+
+/**
+ * Bakes every .tmx room in a directory into the binary .room format, written next to the source file.
+ * Run from the assets directory with './gradlew lwjgl3:bakeRooms', the directory defaults to 'maps'.
+ */
+public class RoomBaker {
+	public static void main(String[] args) {
+		FileHandle directory = new FileHandle((args.length > 0) ? args[0] : "maps");
+		if (!directory.isDirectory()) {
+			System.err.println("Not a directory: " + directory.path());
+			System.exit(1);
+		}
+
+		int count = 0;
+		for (FileHandle file : directory.list()) {
+			if (!"tmx".equals(file.extension())) continue;
+
+			long start = System.nanoTime();
+			// note - room grid coordinates aren't part of the baked format, they come from the filename at load time
+			Room room = RoomLoader.load(file, 0, 0);
+			byte[] bytes = RoomBinary.write(room, file.parent().path(), RoomBinary.hash(file));
+			FileHandle output = file.sibling(file.nameWithoutExtension() + ".room");
+			output.writeBytes(bytes, false);
+			long elapsed = (System.nanoTime() - start) / 1000;
+
+			System.out.println("baked " + file.path() + " -> " + output.path() + " (" + bytes.length + " bytes, " + elapsed + " us)");
+			count++;
+		}
+		System.out.println("baked " + count + " rooms");
+	}
+}